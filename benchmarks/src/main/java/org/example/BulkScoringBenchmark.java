@@ -0,0 +1,146 @@
+package org.example;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Пересчёт когорты целиком: BulkScorer (Vector API и скалярные циклы по столбцам)
+ * против ScoringTable.evaluate по одному пациенту. Время — на всю когорту.
+ * Перед замером оба пути BulkScorer сверяются со ScoringTable бит в бит — на самой когорте и на
+ * граничных значениях, NaN, -0.0 и значениях вне диапазонов; при расхождении прогон прерывается.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+public class BulkScoringBenchmark {
+    @Param({"4096", "262144"})
+    private int patients;
+
+    private ScoringTable table;
+    private double[][] rows;
+    private double[][] columns;
+    private BulkScorer vector;
+    private BulkScorer scalar;
+    private BulkScorer.Results results;
+    private ScoringTable.Result result;
+
+    @Setup
+    public void setup() {
+        RiskDataStorage storage = new RiskDataStorage();
+        table = storage.getScoringTable();
+        rows = PatientProfiles.generate(storage.getSchema(), patients, 42);
+        columns = toColumns(rows);
+        vector = new BulkScorer(table, true);
+        scalar = new BulkScorer(table, false);
+        results = new BulkScorer.Results(patients);
+        result = new ScoringTable.Result(table.parameterCount());
+
+        double[][] edges = edgeCases(rows[0]);
+        for (BulkScorer scorer : new BulkScorer[]{vector, scalar}) {
+            verify(scorer, columns, rows);
+            verify(scorer, toColumns(edges), edges);
+        }
+    }
+
+    // Пациент rows[0], у которого по очереди заменяется один параметр: каждая граница диапазонов и соседние
+    // с ней double, ноль с обоими знаками, NaN, бесконечности и значения за крайними границами
+    private double[][] edgeCases(double[] base) {
+        List<double[]> cases = new ArrayList<>();
+        for (int p = 0; p < table.parameterCount(); p++) {
+            double[] boundaries = table.getBoundaries(p);
+            List<Double> values = new ArrayList<>(List.of(
+                    0.0, -0.0, Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY,
+                    boundaries[0] - 1, boundaries[boundaries.length - 1] + 1));
+            for (double boundary : boundaries) {
+                values.add(boundary);
+                values.add(Math.nextDown(boundary));
+                values.add(Math.nextUp(boundary));
+            }
+            for (double value : values) {
+                double[] row = base.clone();
+                row[p] = value;
+                cases.add(row);
+            }
+        }
+        return cases.toArray(new double[0][]);
+    }
+
+    private static double[][] toColumns(double[][] rows) {
+        double[][] columns = new double[rows[0].length][rows.length];
+        for (int i = 0; i < rows.length; i++) {
+            for (int p = 0; p < columns.length; p++) {
+                columns[p][i] = rows[i][p];
+            }
+        }
+        return columns;
+    }
+
+    // Балл и уровень — как у ScoringTable.evaluate, для значений вне диапазонов -1;
+    // логит и вероятность — как у ScoringTable.logit и probability, все NaN считаются одинаковыми
+    private void verify(BulkScorer scorer, double[][] columns, double[][] rows) {
+        BulkScorer.Results bulk = scorer.evaluate(columns);
+        ScoringTable.Result expected = new ScoringTable.Result(table.parameterCount());
+        for (int i = 0; i < rows.length; i++) {
+            double[] row = rows[i];
+            int score = 0;
+            for (int p = 0; p < row.length && score >= 0; p++) {
+                int range = table.findRange(p, row[p]);
+                score = range < 0 ? -1 : score + table.getRange(p, range).getScore();
+            }
+            int level = score < 0 ? -1 : table.riskLevelOf(score);
+            if (level >= 0) {
+                table.evaluate(row, expected);
+                score = expected.getScore();
+                level = expected.getRiskLevelIndex();
+            }
+            if (bulk.getScores()[i] != score || bulk.getRiskLevels()[i] != level
+                    || Double.doubleToLongBits(bulk.getLogits()[i]) != Double.doubleToLongBits(table.logit(row))
+                    || Double.doubleToLongBits(bulk.getProbabilities()[i])
+                    != Double.doubleToLongBits(table.probability(row))) {
+                throw new IllegalStateException("BulkScorer" + (scorer.isVectorized() ? " (Vector API)" : "")
+                        + " расходится со ScoringTable для " + Arrays.toString(row)
+                        + ": балл " + bulk.getScores()[i] + " вместо " + score
+                        + ", уровень " + bulk.getRiskLevels()[i] + " вместо " + level
+                        + ", логит " + bulk.getLogits()[i] + " вместо " + table.logit(row));
+            }
+        }
+    }
+
+    @Benchmark
+    public BulkScorer.Results bulkVector() {
+        vector.evaluate(columns, results);
+        return results;
+    }
+
+    @Benchmark
+    public BulkScorer.Results bulkScalar() {
+        scalar.evaluate(columns, results);
+        return results;
+    }
+
+    @Benchmark
+    public long perPatient() {
+        long sum = 0;
+        for (double[] row : rows) {
+            sum += table.evaluate(row, result).getScore();
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,69 @@
+package org.example;
+
+import java.util.Random;
+
+/**
+ * Синтетические пациенты с правдоподобным распределением параметров:
+ * в основном доношенные дети с нормальными показателями и хвост тяжёлых случаев.
+ */
+final class PatientProfiles {
+    private PatientProfiles() {
+    }
+
+    static double[][] generate(ParameterSchema schema, int count, long seed) {
+        Random random = new Random(seed);
+        double[][] patients = new double[count][schema.size()];
+        for (double[] patient : patients) {
+            for (int i = 0; i < schema.size(); i++) {
+                patient[i] = sample(schema.get(i).getKey(), random);
+            }
+        }
+        return patients;
+    }
+
+    // Строка "7.25, 2, 5, 1800, 4.8, 0, 1" в том виде, как её вводит пользователь
+    static String toLine(ParameterSchema schema, double[] patient) {
+        StringBuilder line = new StringBuilder();
+        for (int i = 0; i < patient.length; i++) {
+            if (i > 0) {
+                line.append(", ");
+            }
+            line.append(toText(schema.get(i), patient[i]));
+        }
+        return line.toString();
+    }
+
+    static String toText(ParameterSchema.Parameter parameter, double value) {
+        return parameter.getType() == ParameterSchema.ValueType.DECIMAL
+                ? Double.toString(value) : Long.toString((long) value);
+    }
+
+    private static double sample(String key, Random random) {
+        switch (key) {
+            case "ph":
+                return round(clamp(7.25 + random.nextGaussian() * 0.12, 6.5, 7.7), 100);
+            case "age":
+                return Math.min(168, (int) (-Math.log(1 - random.nextDouble()) * 12));
+            case "apgar":
+                return random.nextDouble() < 0.8 ? 6 + random.nextInt(5) : random.nextInt(6);
+            case "weight":
+                return (int) clamp(2900 + random.nextGaussian() * 800, 500, 5000);
+            case "pao2":
+                return round(clamp(7 + random.nextGaussian() * 3, 0.5, 50), 10);
+            case "malformations":
+                return random.nextDouble() < 0.08 ? 1 : 0;
+            case "intubation":
+                return random.nextDouble() < 0.2 ? 1 : 0;
+            default:
+                return 0;
+        }
+    }
+
+    private static double clamp(double value, double min, double max) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+    private static double round(double value, double scale) {
+        return Math.round(value * scale) / scale;
+    }
+}
@@ -0,0 +1,66 @@
+package org.example;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// Сборка текста результата по уже посчитанной оценке: по шаблонам и из готовых кусков ResultCache
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResponseBenchmark {
+    private static final int PATIENTS = 1024;
+
+    private StubRiskBot bot;
+    private RiskDataStorage storage;
+    private double[][] patients;
+    private ScoringTable.Result[] results;
+    private ScoringTable.Result[] cachedResults; // с записью ResultCache — текст собирается из готовых кусков
+    private final StringBuilder buffer = new StringBuilder(1024);
+    private int cursor;
+
+    @Setup
+    public void setup() {
+        bot = new StubRiskBot();
+        storage = bot.getConfig().current();
+        ParameterSchema schema = storage.getSchema();
+        patients = PatientProfiles.generate(schema, PATIENTS, 7);
+        results = new ScoringTable.Result[PATIENTS];
+        cachedResults = new ScoringTable.Result[PATIENTS];
+        for (int i = 0; i < PATIENTS; i++) {
+            results[i] = storage.getScoringTable().evaluate(patients[i], new ScoringTable.Result(schema.size()));
+            cachedResults[i] = storage.getScoringTable().evaluate(patients[i],
+                    new ScoringTable.Result(schema.size()), storage.getResultCache());
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        bot.onClosing();
+    }
+
+    @Benchmark
+    public String buildAssessmentResponse() {
+        cursor = (cursor + 1) & (PATIENTS - 1);
+        return bot.buildAssessmentResponse(storage, results[cursor], patients[cursor], buffer);
+    }
+
+    @Benchmark
+    public String buildAssessmentResponseCached() {
+        cursor = (cursor + 1) & (PATIENTS - 1);
+        return bot.buildAssessmentResponse(storage, cachedResults[cursor], patients[cursor], buffer);
+    }
+}
@@ -0,0 +1,95 @@
+package org.example;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Расчёт баллов, вероятности и проверка диапазонов на одном пациенте.
+ * hermansenScoreFindRange — прежний путь через ParameterConfig.findRange, для сравнения.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScoringBenchmark {
+    private static final int PATIENTS = 4096;
+
+    private RiskDataStorage storage;
+    private ScoringTable table;
+    private ParameterSchema schema;
+    private double[][] patients;
+    private String[] lines;
+    private double[] parsed;
+    private ScoringTable.Result result;
+    private BatchAssessment batch;
+    private int cursor;
+
+    @Setup
+    public void setup() {
+        storage = new RiskDataStorage();
+        table = storage.getScoringTable();
+        schema = storage.getSchema();
+        patients = PatientProfiles.generate(schema, PATIENTS, 42);
+        lines = new String[PATIENTS];
+        for (int i = 0; i < PATIENTS; i++) {
+            lines[i] = PatientProfiles.toLine(schema, patients[i]);
+        }
+        parsed = new double[schema.size()];
+        result = new ScoringTable.Result(schema.size());
+        batch = new BatchAssessment(storage);
+    }
+
+    private int next() {
+        cursor = (cursor + 1) & (PATIENTS - 1);
+        return cursor;
+    }
+
+    @Benchmark
+    public int hermansenScore() {
+        return table.evaluate(patients[next()], result).getScore();
+    }
+
+    @Benchmark
+    public int hermansenScoreFindRange() {
+        double[] patient = patients[next()];
+        int score = 0;
+        for (int i = 0; i < patient.length; i++) {
+            score += storage.getParameterConfig(schema.get(i).getKey()).findRange(patient[i]).getScore();
+        }
+        return score + storage.getRiskLevel(score).getMinScore();
+    }
+
+    @Benchmark
+    public double mortalityProbability() {
+        return table.probability(patients[next()]);
+    }
+
+    @Benchmark
+    public int validateRange() {
+        double[] patient = patients[next()];
+        int valid = 0;
+        for (int i = 0; i < patient.length; i++) {
+            if (BatchAssessment.checkValue(table, schema.get(i), patient[i]) == null) {
+                valid++;
+            }
+        }
+        return valid;
+    }
+
+    @Benchmark
+    public String parseLine() {
+        return batch.parseLine(lines[next()], ',', parsed);
+    }
+}
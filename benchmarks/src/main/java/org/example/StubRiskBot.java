@@ -0,0 +1,35 @@
+package org.example;
+
+import org.telegram.telegrambots.meta.api.methods.BotApiMethod;
+
+import java.io.Serializable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Бот без сети: execute и executeAsync только считают отправленные сообщения
+class StubRiskBot extends RiskBot {
+    final AtomicLong sent = new AtomicLong();
+
+    StubRiskBot() {
+        // лимиты Telegram, допуск обновлений и журналы здесь не нужны
+        super(Tenant.offline(), Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY,
+                new AdmissionControl(Integer.MAX_VALUE, AdmissionControl.WINDOW, Integer.MAX_VALUE));
+    }
+
+    @Override
+    public String getBotToken() {
+        return "stub";
+    }
+
+    @Override
+    public <T extends Serializable, Method extends BotApiMethod<T>> T execute(Method method) {
+        sent.incrementAndGet();
+        return null;
+    }
+
+    @Override
+    public <T extends Serializable, Method extends BotApiMethod<T>> CompletableFuture<T> executeAsync(Method method) {
+        sent.incrementAndGet();
+        return CompletableFuture.completedFuture(null);
+    }
+}
@@ -0,0 +1,110 @@
+package org.example;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.telegram.telegrambots.meta.api.objects.Chat;
+import org.telegram.telegrambots.meta.api.objects.Message;
+import org.telegram.telegrambots.meta.api.objects.Update;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Обработка обновлений целиком, с заглушкой вместо execute и без лимитов отправки.
+ * oneLineAssessment — оценка одним сообщением, stepByStepAssessment — /start и семь ответов по одному,
+ * dispatchedBatch — пачка оценок разных чатов через диспетчер, время до последнего ответа.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UpdateBenchmark {
+    private static final int PATIENTS = 1024;
+    private static final int BATCH = 64;
+
+    private StubRiskBot bot;
+    private Update[] lineUpdates;
+    private Update[][] stepUpdates;
+    private int cursor;
+    private int updateId;
+
+    @Setup
+    public void setup() {
+        bot = new StubRiskBot();
+        ParameterSchema schema = bot.getConfig().current().getSchema();
+        double[][] patients = PatientProfiles.generate(schema, PATIENTS, 11);
+
+        lineUpdates = new Update[PATIENTS];
+        stepUpdates = new Update[PATIENTS][];
+        for (int i = 0; i < PATIENTS; i++) {
+            long chatId = 100_000 + i;
+            lineUpdates[i] = update(chatId, PatientProfiles.toLine(schema, patients[i]));
+            stepUpdates[i] = new Update[schema.size() + 1];
+            stepUpdates[i][0] = update(chatId, "/start");
+            for (int p = 0; p < schema.size(); p++) {
+                stepUpdates[i][p + 1] = update(chatId, PatientProfiles.toText(schema.get(p), patients[i][p]));
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        bot.onClosing();
+    }
+
+    private Update update(long chatId, String text) {
+        Chat chat = new Chat();
+        chat.setId(chatId);
+        Message message = new Message();
+        message.setChat(chat);
+        message.setText(text);
+        Update update = new Update();
+        update.setUpdateId(++updateId);
+        update.setMessage(message);
+        return update;
+    }
+
+    private int next() {
+        cursor = (cursor + 1) & (PATIENTS - 1);
+        return cursor;
+    }
+
+    @Benchmark
+    public long oneLineAssessment() {
+        bot.handleUpdate(lineUpdates[next()]);
+        return bot.sent.get();
+    }
+
+    @Benchmark
+    public long stepByStepAssessment() {
+        for (Update update : stepUpdates[next()]) {
+            bot.handleUpdate(update);
+        }
+        return bot.sent.get();
+    }
+
+    @Benchmark
+    public long dispatchedBatch() {
+        long target = bot.getDispatcher().getProcessedCount() + BATCH;
+        for (int i = 0; i < BATCH; i++) {
+            Update update = lineUpdates[next()];
+            update.setUpdateId(++updateId); // повторный update_id отбросил бы допуск обновлений
+            bot.onUpdateReceived(update);
+        }
+        // ответы могут склеиться в исходящей очереди, поэтому ждём её опустошения, а не числа отправок
+        while (bot.getDispatcher().getProcessedCount() < target || bot.getOutbound().getPendingCount() > 0) {
+            Thread.onSpinWait();
+        }
+        return target;
+    }
+}
@@ -0,0 +1,157 @@
+package org.example;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Симулированный врач в своём чате: /start, затем значения параметров по одному, каждое —
+ * после ответа бота на предыдущее. Иногда ошибается в формате и вводит значение повторно,
+ * на вопросы с кнопками иногда отвечает нажатием. Задержка шага — от выдачи обновления
+ * серверу Bot API до ответа бота в этот чат.
+ */
+final class Clinician {
+    private final long chatId;
+    private final LoadTest test;
+
+    private boolean busy;
+    private int step;             // 0 — /start, далее номер параметра + 1
+    private String[] values;
+    private boolean typoSent;     // ждём ответа о неверном формате
+    private long stepSentAt;
+    private long assessmentStartedAt;
+    private int promptMessageId;  // сообщение с последним вопросом
+    private List<String> buttons = List.of();
+
+    Clinician(long chatId, LoadTest test) {
+        this.chatId = chatId;
+        this.test = test;
+    }
+
+    long getChatId() {
+        return chatId;
+    }
+
+    /**
+     * Начинает новую оценку; false, если врач ещё занят предыдущей.
+     */
+    synchronized boolean start() {
+        if (busy) {
+            return false;
+        }
+        busy = true;
+        step = 0;
+        values = test.samplePatient();
+        assessmentStartedAt = System.nanoTime();
+        send();
+        return true;
+    }
+
+    synchronized void onReply(int messageId, JsonNode request) {
+        if (!busy) {
+            test.getStats().unexpected();
+            return;
+        }
+        long now = System.nanoTime();
+        test.getStats().stepLatency(now - stepSentAt);
+        String text = request.path("text").asText("");
+
+        if (text.equals(test.getTemplates().rateLimited())) {
+            // обновление отброшено допуском — повторяем тот же шаг позже
+            test.getStats().throttled();
+            test.schedule(this::resend, TimeUnit.SECONDS.toMillis(1));
+            return;
+        }
+        if (typoSent) {
+            typoSent = false;
+            if (!text.equals(test.getTemplates().invalidFormat())) {
+                test.getStats().unexpected();
+            }
+            send();
+            return;
+        }
+        if (step == values.length + 1) {
+            busy = false;
+            test.getStats().completed(now - assessmentStartedAt);
+            test.release(this);
+            return;
+        }
+        if (text.startsWith("⚠️")) {
+            test.getStats().unexpected();
+            busy = false;
+            test.release(this);
+            return;
+        }
+        promptMessageId = messageId;
+        buttons = callbackData(request.path("reply_markup").path("inline_keyboard"));
+        test.schedule(this::send, test.getSettings().thinkMillis());
+    }
+
+    /**
+     * Ответ не пришёл вовремя — оценка считается потерянной, врач свободен.
+     */
+    synchronized boolean expire(long now, long timeoutNanos) {
+        if (!busy || now - stepSentAt < timeoutNanos) {
+            return false;
+        }
+        busy = false;
+        typoSent = false;
+        test.release(this);
+        return true;
+    }
+
+    private synchronized void resend() {
+        if (!busy) {
+            return;
+        }
+        // опечатка шаг не сдвигала, остальные сообщения — сдвигали
+        if (typoSent) {
+            typoSent = false;
+        } else {
+            step--;
+        }
+        send();
+    }
+
+    private synchronized void send() {
+        if (!busy) {
+            return;
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        stepSentAt = System.nanoTime();
+        if (step == 0) {
+            step++;
+            test.getApi().pushMessage(chatId, "/start");
+            return;
+        }
+        LoadTest.Settings settings = test.getSettings();
+        if (!typoSent && random.nextDouble() < settings.typoRate()) {
+            typoSent = true;
+            test.getApi().pushMessage(chatId, values[step - 1] + "x");
+            return;
+        }
+        if (!buttons.isEmpty() && random.nextDouble() < settings.buttonRate()) {
+            step++;
+            test.getApi().pushCallback(chatId, promptMessageId, buttons.get(random.nextInt(buttons.size())));
+            return;
+        }
+        test.getApi().pushMessage(chatId, values[step - 1]);
+        step++;
+    }
+
+    private static List<String> callbackData(JsonNode keyboard) {
+        if (!keyboard.isArray()) {
+            return List.of();
+        }
+        List<String> data = new ArrayList<>();
+        for (JsonNode row : keyboard) {
+            for (JsonNode button : row) {
+                data.add(button.path("callback_data").asText());
+            }
+        }
+        return data;
+    }
+}
@@ -0,0 +1,260 @@
+package org.example;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntFunction;
+
+/**
+ * Локальный сервер Bot API для нагрузочного прогона: http://127.0.0.1:PORT/bot&lt;token&gt;/&lt;метод&gt;.
+ * getUpdates отдаёт накопленные обновления с долгим опросом и смещением (offset), как Telegram;
+ * как и Telegram, новый getUpdates завершает ещё ждущий предыдущий ответом 409 (Conflict);
+ * sendMessage и editMessageText передаются получателю (симулятору врачей) и отвечают сообщением
+ * с новым message_id, остальные методы (answerCallbackQuery, deleteWebhook и т. п.) — просто true.
+ */
+final class FakeBotApi implements AutoCloseable {
+    /**
+     * Получатель исходящих сообщений бота.
+     */
+    interface Receiver {
+        void onMessage(long chatId, int messageId, JsonNode request);
+    }
+
+    private static final int MAX_LIMIT = 100;
+
+    static {
+        // без TCP_NODELAY заголовки и тело ответа уходят отдельными пакетами, и клиент ждёт
+        // отложенного подтверждения (~40 мс на запрос) — это мерили бы вместо бота
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Receiver receiver;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition available = lock.newCondition();
+    private final ArrayDeque<Pending> updates = new ArrayDeque<>(); // под lock, по возрастанию update_id
+    private int nextUpdateId = 1;                                  // под lock
+    private int maxDeliveredId;                                    // под lock
+    private long pollGeneration;                                   // под lock, номер последнего getUpdates
+
+    private final AtomicInteger nextMessageId = new AtomicInteger(1);
+    private final LongAdder polls = new LongAdder();
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder redelivered = new LongAdder();
+    private final LongAdder conflicts = new LongAdder();
+    private final LongAdder received = new LongAdder();
+    private final LongAdder otherCalls = new LongAdder();
+
+    private record Pending(int updateId, String json) {
+    }
+
+    FakeBotApi(int port, Receiver receiver) throws IOException {
+        this.receiver = receiver;
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 1024);
+        this.server.createContext("/", this::handle);
+        this.server.setExecutor(executor);
+        this.server.start();
+    }
+
+    /**
+     * Адрес для DefaultBotOptions.setBaseUrl.
+     */
+    String getBaseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/bot";
+    }
+
+    /**
+     * Текстовое сообщение от врача; возвращает update_id.
+     */
+    int pushMessage(long chatId, String text) {
+        return push(id -> "{\"update_id\":" + id + ",\"message\":{\"message_id\":" + id + ",\"date\":0,"
+                + "\"chat\":{\"id\":" + chatId + ",\"type\":\"private\"},"
+                + "\"from\":{\"id\":" + chatId + ",\"is_bot\":false,\"first_name\":\"load\"},"
+                + "\"text\":" + quote(text) + "}}");
+    }
+
+    /**
+     * Нажатие кнопки под сообщением messageId; возвращает update_id.
+     */
+    int pushCallback(long chatId, int messageId, String data) {
+        return push(id -> "{\"update_id\":" + id + ",\"callback_query\":{\"id\":\"" + id + "\","
+                + "\"from\":{\"id\":" + chatId + ",\"is_bot\":false,\"first_name\":\"load\"},"
+                + "\"chat_instance\":\"" + chatId + "\",\"data\":" + quote(data) + ","
+                + "\"message\":{\"message_id\":" + messageId + ",\"date\":0,"
+                + "\"chat\":{\"id\":" + chatId + ",\"type\":\"private\"}}}}");
+    }
+
+    private int push(IntFunction<String> json) {
+        lock.lock();
+        try {
+            int id = nextUpdateId++;
+            updates.addLast(new Pending(id, json.apply(id)));
+            available.signalAll();
+            return id;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Метрики
+
+    int getBacklog() {
+        lock.lock();
+        try {
+            return updates.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    long getPollCount() {
+        return polls.sum();
+    }
+
+    long getDeliveredCount() {
+        return delivered.sum();
+    }
+
+    /**
+     * Обновления, выданные повторно: получатель не подтвердил их смещением и запросил заново.
+     */
+    long getRedeliveredCount() {
+        return redelivered.sum();
+    }
+
+    long getConflictCount() {
+        return conflicts.sum();
+    }
+
+    long getReceivedCount() {
+        return received.sum();
+    }
+
+    long getOtherCallCount() {
+        return otherCalls.sum();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String path = exchange.getRequestURI().getPath();
+            String method = path.substring(path.lastIndexOf('/') + 1).toLowerCase(Locale.ROOT);
+            byte[] body = exchange.getRequestBody().readAllBytes();
+            JsonNode request = body.length == 0 ? mapper.createObjectNode() : mapper.readTree(body);
+
+            String result;
+            switch (method) {
+                case "getupdates":
+                    result = getUpdates(request);
+                    if (result == null) {
+                        conflicts.increment();
+                        respond(exchange, 409, "{\"ok\":false,\"error_code\":409,"
+                                + "\"description\":\"Conflict: terminated by other getUpdates request\"}");
+                        return;
+                    }
+                    break;
+                case "sendmessage":
+                case "editmessagetext":
+                    result = message(request);
+                    break;
+                default:
+                    otherCalls.increment();
+                    result = "true";
+            }
+            respond(exchange, 200, "{\"ok\":true,\"result\":" + result + "}");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] response = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, response.length);
+        exchange.getResponseBody().write(response);
+    }
+
+    // Подтверждённые смещением обновления удаляются; ждём новые не дольше timeout секунд.
+    // null — ожидание прервал более новый getUpdates
+    private String getUpdates(JsonNode request) throws InterruptedException {
+        polls.increment();
+        long offset = request.path("offset").asLong(0);
+        int limit = Math.max(1, Math.min(MAX_LIMIT, request.path("limit").asInt(MAX_LIMIT)));
+        long waitNanos = TimeUnit.SECONDS.toNanos(request.path("timeout").asInt(0));
+
+        StringBuilder result = new StringBuilder("[");
+        lock.lock();
+        try {
+            long generation = ++pollGeneration;
+            available.signalAll();
+            while (!updates.isEmpty() && updates.peekFirst().updateId() < offset) {
+                updates.pollFirst();
+            }
+            while (updates.isEmpty() && waitNanos > 0) {
+                waitNanos = available.awaitNanos(waitNanos);
+                if (generation != pollGeneration) {
+                    return null;
+                }
+            }
+            int count = 0;
+            for (Pending pending : updates) {
+                if (count == limit) {
+                    break;
+                }
+                if (count > 0) {
+                    result.append(',');
+                }
+                result.append(pending.json());
+                if (pending.updateId() <= maxDeliveredId) {
+                    redelivered.increment();
+                }
+                maxDeliveredId = Math.max(maxDeliveredId, pending.updateId());
+                count++;
+            }
+            delivered.add(count);
+        } finally {
+            lock.unlock();
+        }
+        return result.append(']').toString();
+    }
+
+    private String message(JsonNode request) {
+        received.increment();
+        long chatId = request.path("chat_id").asLong();
+        int messageId = request.hasNonNull("message_id")
+                ? request.path("message_id").asInt() : nextMessageId.getAndIncrement();
+        receiver.onMessage(chatId, messageId, request);
+        return "{\"message_id\":" + messageId + ",\"date\":0,\"chat\":{\"id\":" + chatId + ",\"type\":\"private\"}}";
+    }
+
+    private String quote(String text) {
+        try {
+            return mapper.writeValueAsString(text);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,459 @@
+package org.example;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+import javax.management.NotificationEmitter;
+import javax.management.openmbean.CompositeData;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Нагрузочный и длительный (soak) прогон бота против локального сервера Bot API.
+ * Бот работает как в продакшене — долгий опрос getUpdates, диспетчер, исходящая очередь, журналы, —
+ * только вместо api.telegram.org отвечает FakeBotApi. Оценки начинаются с заданной частотой
+ * у свободных врачей из пула; каждая проходит все шаги ввода.
+ * Раз в интервал печатаются пропускная способность, p50/p99 задержки шага и всей оценки,
+ * занятая куча после последней сборки мусора и состояние очередей бота; в конце — рост кучи за прогон.
+ * С loadtest.restart бот раз в заданное число секунд перезапускается с передачей работы новому экземпляру —
+ * так же, как при SIGTERM (BotHost.shutdown); повторно выданные обновления и неожиданные ответы
+ * показывают, не потерялось ли что-то и не продублировалось ли при передаче.
+ *
+ * Параметры (-D): loadtest.chats, loadtest.rate (оценок в секунду), loadtest.duration (с),
+ * loadtest.think (мс между ответом бота и следующим вводом), loadtest.report (с), loadtest.typos,
+ * loadtest.buttons (доли шагов с опечаткой и с нажатием кнопки), loadtest.timeout (с),
+ * loadtest.telegramLimits (лимиты отправки Telegram), loadtest.port, loadtest.restart (с, 0 — без перезапусков).
+ */
+public final class LoadTest {
+    private static final long ARRIVAL_TICK_MILLIS = 10;
+    private static final double MB = 1024.0 * 1024.0;
+
+    record Settings(int chats, double rate, int durationSeconds, long thinkMillis, int reportSeconds,
+                    double typoRate, double buttonRate, int timeoutSeconds, boolean telegramLimits, int port,
+                    int restartSeconds) {
+        static Settings fromProperties() {
+            return new Settings(
+                    Integer.getInteger("loadtest.chats", 1_000),
+                    Double.parseDouble(System.getProperty("loadtest.rate", "50")),
+                    Integer.getInteger("loadtest.duration", 60),
+                    Long.getLong("loadtest.think", 200),
+                    Integer.getInteger("loadtest.report", 10),
+                    Double.parseDouble(System.getProperty("loadtest.typos", "0.02")),
+                    Double.parseDouble(System.getProperty("loadtest.buttons", "0.5")),
+                    Integer.getInteger("loadtest.timeout", 30),
+                    Boolean.getBoolean("loadtest.telegramLimits"),
+                    Integer.getInteger("loadtest.port", 0),
+                    Integer.getInteger("loadtest.restart", 0));
+        }
+    }
+
+    private final Settings settings;
+    private final Stats stats = new Stats();
+    private final Map<Long, Clinician> clinicians = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Clinician> idle = new ConcurrentLinkedQueue<>();
+    private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(2);
+    private final HeapMonitor heap = new HeapMonitor();
+    private final List<double[]> heapSamples = new ArrayList<>(); // {секунды, МБ после GC}
+
+    private FakeBotApi api;
+    private Path directory; // журналы ботов прогона; перезапуск передаёт через него сессии
+    private volatile LoadBot bot;
+    private volatile UpdatePoller poller;
+    private volatile RiskDataStorage storage;
+
+    private LoadTest(Settings settings) {
+        this.settings = settings;
+    }
+
+    public static void main(String[] args) throws Exception {
+        new LoadTest(Settings.fromProperties()).run();
+    }
+
+    private void run() throws Exception {
+        directory = Files.createTempDirectory("loadtest-");
+        api = new FakeBotApi(settings.port(), this::onMessage);
+        System.setProperty("bot.api.url", api.getBaseUrl());
+        bot = new LoadBot(settings.telegramLimits(), directory);
+        storage = bot.getConfig().current();
+        for (int i = 0; i < settings.chats(); i++) {
+            Clinician clinician = new Clinician(1_000_000L + i, this);
+            clinicians.put(clinician.getChatId(), clinician);
+            idle.add(clinician);
+        }
+        poller = new UpdatePoller(bot);
+        poller.start();
+        System.out.printf(Locale.ROOT, "Нагрузка: %d чатов, %.1f оценок/с, %d с, сервер %s%n",
+                settings.chats(), settings.rate(), settings.durationSeconds(), api.getBaseUrl());
+
+        long started = System.nanoTime();
+        scheduler.scheduleAtFixedRate(() -> report(started), settings.reportSeconds(), settings.reportSeconds(),
+                TimeUnit.SECONDS);
+        scheduler.scheduleAtFixedRate(this::expire, 1, 1, TimeUnit.SECONDS);
+        if (settings.restartSeconds() > 0) {
+            scheduler.scheduleAtFixedRate(this::restart, settings.restartSeconds(), settings.restartSeconds(),
+                    TimeUnit.SECONDS);
+        }
+
+        // открытая модель: оценки начинаются по расписанию, независимо от того, успевает ли бот
+        long end = started + TimeUnit.SECONDS.toNanos(settings.durationSeconds());
+        long due = 0;
+        for (long now = System.nanoTime(); now < end; now = System.nanoTime()) {
+            long target = (long) (settings.rate() * (now - started) / 1e9);
+            for (; due < target; due++) {
+                Clinician clinician = idle.poll();
+                if (clinician == null || !clinician.start()) {
+                    stats.saturated.increment();
+                } else {
+                    stats.started.increment();
+                }
+            }
+            Thread.sleep(ARRIVAL_TICK_MILLIS);
+        }
+
+        // дожидаемся начатых оценок
+        long drainDeadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(settings.timeoutSeconds() + 1L);
+        while (idle.size() < clinicians.size() && System.nanoTime() < drainDeadline) {
+            Thread.sleep(50);
+        }
+        scheduler.shutdownNow();
+        summary(started);
+
+        stop(bot, poller);
+        api.close();
+        deleteDirectory(directory);
+    }
+
+    // Методы для врачей
+
+    Settings getSettings() {
+        return settings;
+    }
+
+    Stats getStats() {
+        return stats;
+    }
+
+    FakeBotApi getApi() {
+        return api;
+    }
+
+    MessageTemplates getTemplates() {
+        return storage.getTemplates();
+    }
+
+    void release(Clinician clinician) {
+        idle.add(clinician);
+    }
+
+    void schedule(Runnable action, long delayMillis) {
+        try {
+            scheduler.schedule(action, delayMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // прогон уже завершается
+        }
+    }
+
+    /**
+     * Значения пациента текстом: для каждого параметра — случайный диапазон и значение внутри него.
+     */
+    String[] samplePatient() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        ParameterSchema schema = storage.getSchema();
+        String[] values = new String[schema.size()];
+        for (int p = 0; p < values.length; p++) {
+            ParameterSchema.Parameter parameter = schema.get(p);
+            List<RiskDataStorage.Range> ranges = parameter.getConfig().getRanges();
+            RiskDataStorage.Range range = ranges.get(random.nextInt(ranges.size()));
+            if (parameter.getType() == ParameterSchema.ValueType.DECIMAL) {
+                double value = range.getMin() + random.nextDouble() * (range.getMax() - range.getMin());
+                values[p] = String.format(Locale.ROOT, "%.2f", value);
+            } else {
+                long min = (long) Math.ceil(range.getMin());
+                long max = (long) Math.floor(range.getMax());
+                values[p] = Long.toString(min + random.nextLong(max - min + 1));
+            }
+        }
+        return values;
+    }
+
+    private void onMessage(long chatId, int messageId, JsonNode request) {
+        Clinician clinician = clinicians.get(chatId);
+        if (clinician == null) {
+            stats.unexpected();
+            return;
+        }
+        clinician.onReply(messageId, request);
+    }
+
+    private void expire() {
+        long now = System.nanoTime();
+        long timeout = TimeUnit.SECONDS.toNanos(settings.timeoutSeconds());
+        for (Clinician clinician : clinicians.values()) {
+            if (clinician.expire(now, timeout)) {
+                stats.lost.increment();
+            }
+        }
+    }
+
+    // Передача работы новому экземпляру: старый останавливается, как по SIGTERM, новый запускается после
+    private void restart() {
+        long began = System.nanoTime();
+        boolean finished = stop(bot, poller);
+        bot = new LoadBot(settings.telegramLimits(), directory);
+        storage = bot.getConfig().current();
+        poller = new UpdatePoller(bot);
+        poller.start();
+        stats.restarts.increment();
+        System.out.printf(Locale.ROOT, "Перезапуск бота за %s%s%n", millis(System.nanoTime() - began),
+                finished ? "" : ", очередь не доработана");
+    }
+
+    private boolean stop(LoadBot stopping, UpdatePoller stoppingPoller) {
+        stoppingPoller.stop();
+        boolean finished = stopping.close(System.nanoTime() + BotHost.DEFAULT_SHUTDOWN_TIMEOUT.toNanos());
+        stoppingPoller.commit();
+        return finished;
+    }
+
+    private void report(long started) {
+        double seconds = (System.nanoTime() - started) / 1e9;
+        Stats.Interval interval = stats.nextInterval();
+        double heapMb = heap.getUsedAfterGc() / MB;
+        synchronized (heapSamples) {
+            heapSamples.add(new double[]{seconds, heapMb});
+        }
+        System.out.printf(Locale.ROOT,
+                "[%5.0f с] оценок %6.1f/с, ответов %7.1f/с | шаг p50 %s p99 %s | оценка p50 %s p99 %s"
+                        + " | занято %d, потеряно %d, отказов допуска %d | сессий %d, очередь %d, исходящих %d,"
+                        + " ждут выдачи %d | куча после GC %.1f МБ%n",
+                seconds, interval.completed / interval.seconds, interval.replies / interval.seconds,
+                millis(interval.steps.quantileNanos(0.5)), millis(interval.steps.quantileNanos(0.99)),
+                millis(interval.assessments.quantileNanos(0.5)), millis(interval.assessments.quantileNanos(0.99)),
+                clinicians.size() - idle.size(), stats.lost.sum(), bot.getAdmission().getRejectedCount(),
+                bot.getSessions().size(), bot.getDispatcher().getQueueDepth(), bot.getOutbound().getPendingCount(),
+                api.getBacklog(), heapMb);
+    }
+
+    private void summary(long started) {
+        double seconds = (System.nanoTime() - started) / 1e9;
+        System.out.printf(Locale.ROOT, "%nИтого за %.0f с:%n", seconds);
+        System.out.printf(Locale.ROOT, "  оценок начато %d, завершено %d (%.1f/с), потеряно %d, не хватило свободных"
+                        + " врачей %d%n", stats.started.sum(), stats.completed.sum(), stats.completed.sum() / seconds,
+                stats.lost.sum(), stats.saturated.sum());
+        System.out.printf(Locale.ROOT, "  ответов %d, повторов после отказа допуска %d, неожиданных ответов %d%n",
+                stats.replies.sum(), stats.throttled.sum(), stats.unexpected.sum());
+        System.out.printf(Locale.ROOT, "  шаг: p50 %s, p99 %s, p99.9 %s, максимум %s%n",
+                millis(stats.steps.quantileNanos(0.5)), millis(stats.steps.quantileNanos(0.99)),
+                millis(stats.steps.quantileNanos(0.999)), millis(stats.steps.getMaxNanos()));
+        System.out.printf(Locale.ROOT, "  оценка: p50 %s, p99 %s, максимум %s%n",
+                millis(stats.assessments.quantileNanos(0.5)), millis(stats.assessments.quantileNanos(0.99)),
+                millis(stats.assessments.getMaxNanos()));
+        System.out.printf(Locale.ROOT, "  Bot API: опросов getUpdates %d, выдано обновлений %d (повторно %d),"
+                        + " сообщений %d, прочих вызовов %d%n", api.getPollCount(), api.getDeliveredCount(),
+                api.getRedeliveredCount(), api.getReceivedCount(), api.getOtherCallCount());
+        if (stats.restarts.sum() > 0) {
+            System.out.printf(Locale.ROOT, "  перезапусков бота %d, конфликтов getUpdates %d%n",
+                    stats.restarts.sum(), api.getConflictCount());
+        }
+        System.out.printf(Locale.ROOT, "  бот: сессий %d, отказов допуска %d, сборок мусора %d%n",
+                bot.getSessions().size(), bot.getAdmission().getRejectedCount(), heap.getCollections());
+        ResultCache cache = storage.getResultCache();
+        long lookups = cache.getHits() + cache.getMisses();
+        System.out.printf(Locale.ROOT, "  кэш результатов: попаданий %.1f%% из %d, наборов диапазонов %d%n",
+                lookups == 0 ? 0 : 100.0 * cache.getHits() / lookups, lookups, cache.getSize());
+
+        // рост кучи — наклон прямой по замерам после первого интервала (прогрев)
+        synchronized (heapSamples) {
+            if (heapSamples.size() >= 3) {
+                List<double[]> samples = heapSamples.subList(1, heapSamples.size());
+                double first = samples.get(0)[1];
+                double last = samples.get(samples.size() - 1)[1];
+                System.out.printf(Locale.ROOT, "  куча после GC: %.1f → %.1f МБ, тренд %+.1f МБ/ч%n",
+                        first, last, slope(samples) * 3600);
+            } else {
+                System.out.println("  куча после GC: мало замеров для тренда, увеличьте loadtest.duration");
+            }
+        }
+    }
+
+    private static void deleteDirectory(Path directory) throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    private static double slope(List<double[]> samples) {
+        double meanX = 0;
+        double meanY = 0;
+        for (double[] sample : samples) {
+            meanX += sample[0];
+            meanY += sample[1];
+        }
+        meanX /= samples.size();
+        meanY /= samples.size();
+        double covariance = 0;
+        double variance = 0;
+        for (double[] sample : samples) {
+            covariance += (sample[0] - meanX) * (sample[1] - meanY);
+            variance += (sample[0] - meanX) * (sample[0] - meanX);
+        }
+        return variance == 0 ? 0 : covariance / variance;
+    }
+
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.1f мс", nanos / 1e6);
+    }
+
+    /**
+     * Счётчики прогона; гистограммы — за всё время и за текущий интервал отчёта.
+     */
+    static final class Stats {
+        final LongAdder started = new LongAdder();
+        final LongAdder completed = new LongAdder();
+        final LongAdder lost = new LongAdder();
+        final LongAdder saturated = new LongAdder();
+        final LongAdder replies = new LongAdder();
+        final LongAdder throttled = new LongAdder();
+        final LongAdder unexpected = new LongAdder();
+        final LongAdder restarts = new LongAdder();
+        final LatencyHistogram steps = new LatencyHistogram();
+        final LatencyHistogram assessments = new LatencyHistogram();
+        private volatile Interval interval = new Interval(System.nanoTime());
+
+        static final class Interval {
+            final long startedAt;
+            final LatencyHistogram steps = new LatencyHistogram();
+            final LatencyHistogram assessments = new LatencyHistogram();
+            final LongAdder repliesAdder = new LongAdder();
+            final LongAdder completedAdder = new LongAdder();
+            double seconds;
+            long replies;
+            long completed;
+
+            Interval(long startedAt) {
+                this.startedAt = startedAt;
+            }
+        }
+
+        void stepLatency(long nanos) {
+            replies.increment();
+            steps.record(nanos);
+            Interval current = interval;
+            current.repliesAdder.increment();
+            current.steps.record(nanos);
+        }
+
+        void completed(long nanos) {
+            completed.increment();
+            assessments.record(nanos);
+            Interval current = interval;
+            current.completedAdder.increment();
+            current.assessments.record(nanos);
+        }
+
+        void throttled() {
+            throttled.increment();
+        }
+
+        void unexpected() {
+            unexpected.increment();
+        }
+
+        // Закрывает текущий интервал и начинает следующий
+        Interval nextInterval() {
+            long now = System.nanoTime();
+            Interval finished = interval;
+            interval = new Interval(now);
+            finished.seconds = Math.max(1e-9, (now - finished.startedAt) / 1e9);
+            finished.replies = finished.repliesAdder.sum();
+            finished.completed = finished.completedAdder.sum();
+            return finished;
+        }
+    }
+
+    /**
+     * Занятая куча сразу после последней сборки мусора — по уведомлениям сборщиков, без System.gc().
+     */
+    private static final class HeapMonitor {
+        private final Set<String> heapPools = new HashSet<>();
+        private volatile long usedAfterGc = -1;
+        private final LongAdder collections = new LongAdder();
+
+        HeapMonitor() {
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                if (pool.getType() == MemoryType.HEAP) {
+                    heapPools.add(pool.getName());
+                }
+            }
+            for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+                if (collector instanceof NotificationEmitter emitter) {
+                    emitter.addNotificationListener((notification, handback) -> {
+                        if (GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION
+                                .equals(notification.getType())) {
+                            onCollection(GarbageCollectionNotificationInfo.from(
+                                    (CompositeData) notification.getUserData()));
+                        }
+                    }, null, null);
+                }
+            }
+        }
+
+        private void onCollection(GarbageCollectionNotificationInfo info) {
+            long used = 0;
+            for (Map.Entry<String, MemoryUsage> pool : info.getGcInfo().getMemoryUsageAfterGc().entrySet()) {
+                if (heapPools.contains(pool.getKey())) {
+                    used += pool.getValue().getUsed();
+                }
+            }
+            usedAfterGc = used;
+            collections.increment();
+        }
+
+        // до первой сборки — просто занятая куча
+        long getUsedAfterGc() {
+            long used = usedAfterGc;
+            return used >= 0 ? used : ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+        }
+
+        long getCollections() {
+            return collections.sum();
+        }
+    }
+
+    // Бот с лимитами отправки Telegram или без них; токен нужен только для пути запросов
+    private static final class LoadBot extends RiskBot {
+        LoadBot(boolean telegramLimits, Path directory) {
+            super(Tenant.offline(directory), telegramLimits ? OutboundSender.CHAT_RATE : Double.POSITIVE_INFINITY,
+                    telegramLimits ? OutboundSender.GLOBAL_RATE : Double.POSITIVE_INFINITY);
+        }
+
+        @Override
+        public String getBotToken() {
+            return "loadtest";
+        }
+    }
+}
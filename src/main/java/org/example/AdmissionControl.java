@@ -0,0 +1,178 @@
+package org.example;
+
+import org.telegram.telegrambots.meta.api.objects.Update;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Допуск обновлений до диспетчера.
+ * Повторные обновления (тот же update_id, например повтор вебхука) отбрасываются,
+ * каждый чат ограничен скользящим окном (не больше CHAT_LIMIT обновлений за WINDOW),
+ * а одновременно в обработке не больше maxInFlight обновлений всех чатов.
+ * Общий лимит проверяется первым: обновление, отклонённое с OVERLOAD, не запоминается как увиденное
+ * и не расходует окно чата, поэтому повторная доставка того же update_id будет допущена.
+ * Тот же лимит ограничивает очередь диспетчера (см. RiskBot).
+ * Отказ — это значение Verdict без исключений и без выделения памяти: флуд одного чата
+ * стоит несколько сравнений и не доходит ни до разбора текста, ни до очереди диспетчера.
+ * Окно чата считается по двум соседним интервалам: счётчик прошлого интервала берётся
+ * с весом оставшейся доли, поэтому на границе интервала лимит не удваивается.
+ */
+public class AdmissionControl {
+    public static final int CHAT_LIMIT = 20;
+    public static final Duration WINDOW = Duration.ofSeconds(10);
+    public static final int MAX_IN_FLIGHT = 500;
+    // помним столько последних update_id; более старые считаются повторами
+    private static final int DEDUP_WINDOW = 4096;
+    private static final int MAX_CHATS = 10_000;
+
+    public enum Verdict {
+        ADMITTED,
+        DUPLICATE,
+        CHAT_LIMIT,          // первый отказ чату в окне — стоит предупредить
+        CHAT_LIMIT_REPEATED, // чат уже предупреждён, отказ молча
+        OVERLOAD
+    }
+
+    private final int chatLimit;
+    private final long windowNanos;
+    private final int maxInFlight;
+    private final SessionStore<ChatWindow> chats;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLongArray verdicts = new AtomicLongArray(Verdict.values().length);
+
+    private final long[] seen = new long[DEDUP_WINDOW / 64]; // кольцевая битовая карта update_id
+    private long highestUpdateId = -1;                        // под блокировкой seen
+
+    public AdmissionControl() {
+        this(CHAT_LIMIT, WINDOW, MAX_IN_FLIGHT);
+    }
+
+    public AdmissionControl(int chatLimit, Duration window, int maxInFlight) {
+        this.chatLimit = chatLimit;
+        this.windowNanos = window.toNanos();
+        this.maxInFlight = maxInFlight;
+        // окно без обновлений дольше двух интервалов ничего не помнит — его можно вытеснить
+        this.chats = new SessionStore<>(MAX_CHATS, window.multipliedBy(2), ChatWindow::new);
+    }
+
+    /**
+     * Решение по обновлению чата chatId. Для ADMITTED после обработки обязательно вызвать release.
+     */
+    public Verdict admit(Update update, long chatId) {
+        Verdict verdict = decide(update.getUpdateId(), chatId, System.nanoTime());
+        verdicts.incrementAndGet(verdict.ordinal());
+        return verdict;
+    }
+
+    /**
+     * Обработка допущенного обновления завершена.
+     */
+    public void release() {
+        inFlight.decrementAndGet();
+    }
+
+    private Verdict decide(Integer updateId, long chatId, long now) {
+        if (inFlight.incrementAndGet() > maxInFlight) {
+            inFlight.decrementAndGet();
+            return Verdict.OVERLOAD;
+        }
+        if (updateId != null && !markSeen(updateId)) {
+            inFlight.decrementAndGet();
+            return Verdict.DUPLICATE;
+        }
+        int chat = chats.getOrCreate(chatId).acquire(now, chatLimit, windowNanos);
+        if (chat != 0) {
+            inFlight.decrementAndGet();
+            return chat > 0 ? Verdict.CHAT_LIMIT : Verdict.CHAT_LIMIT_REPEATED;
+        }
+        return Verdict.ADMITTED;
+    }
+
+    // false — update_id уже встречался или слишком старый, чтобы это проверить
+    private boolean markSeen(long updateId) {
+        synchronized (seen) {
+            if (highestUpdateId < 0) {
+                highestUpdateId = updateId;
+            } else if (updateId > highestUpdateId) {
+                // биты сдвинувшегося окна освобождаются для новых номеров
+                long clearFrom = Math.max(highestUpdateId + 1, updateId - DEDUP_WINDOW + 1);
+                for (long id = clearFrom; id <= updateId; id++) {
+                    int bit = (int) (id & (DEDUP_WINDOW - 1));
+                    seen[bit >>> 6] &= ~(1L << bit);
+                }
+                highestUpdateId = updateId;
+            } else if (updateId <= highestUpdateId - DEDUP_WINDOW) {
+                return false;
+            }
+            int bit = (int) (updateId & (DEDUP_WINDOW - 1));
+            long mask = 1L << bit;
+            if ((seen[bit >>> 6] & mask) != 0) {
+                return false;
+            }
+            seen[bit >>> 6] |= mask;
+            return true;
+        }
+    }
+
+    // Метрики
+
+    public long getCount(Verdict verdict) {
+        return verdicts.get(verdict.ordinal());
+    }
+
+    public long getRejectedCount() {
+        long rejected = 0;
+        for (Verdict verdict : Verdict.values()) {
+            if (verdict != Verdict.ADMITTED) {
+                rejected += verdicts.get(verdict.ordinal());
+            }
+        }
+        return rejected;
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public int getTrackedChats() {
+        return chats.size();
+    }
+
+    private static final class ChatWindow {
+        private long intervalStart = Long.MIN_VALUE;
+        private int current;
+        private int previous;
+        private boolean warned; // предупреждение уже отправлено в этом интервале
+
+        // 0 — допущено, 1 — первый отказ в интервале, -1 — повторный отказ
+        synchronized int acquire(long now, int limit, long window) {
+            if (intervalStart == Long.MIN_VALUE || now - intervalStart >= 2 * window) {
+                intervalStart = now;
+                previous = 0;
+                current = 0;
+                warned = false;
+            } else if (now - intervalStart >= window) {
+                intervalStart += window;
+                previous = current;
+                current = 0;
+                warned = false;
+            }
+            double previousWeight = 1.0 - (double) (now - intervalStart) / window;
+            if (previous * previousWeight + current >= limit) {
+                if (warned) {
+                    return -1;
+                }
+                warned = true;
+                return 1;
+            }
+            current++;
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,266 @@
+package org.example;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.zone.ZoneRules;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Сводная статистика завершённых оценок одного бота для команды /stats.
+ * Счётчики ведутся по дням и за всё время: число оценок, сумма баллов, число оценок на каждый
+ * уровень риска (RiskLevel) и на каждый диапазон каждого параметра (Range) с суммой баллов в нём.
+ * Каждая завершённая оценка сразу добавляется в счётчики, поэтому запрос не просматривает историю:
+ * итог за всё время готов, а тренд за N дней — это N обращений к дневным счётчикам.
+ * При запуске история один раз пересчитывается из журнала оценок параллельным проходом fork-join.
+ * Индексы уровней и диапазонов — по конфигурации, действовавшей в момент оценки.
+ */
+public class AssessmentStats {
+    static final int MAX_LEVELS = 16;
+    static final int MAX_RANGES = 16;
+    private static final int MAX_PARAMETERS = AuditLog.MAX_VALUES;
+    private static final long DAY_MILLIS = 86_400_000L;
+    // записей журнала на одну задачу пересчёта
+    private static final int REBUILD_CHUNK = 1 << 16;
+
+    private final ZoneRules zone;
+    private final Counters total = new Counters();
+    private final Map<Long, Counters> days = new HashMap<>(); // день (epochDay) → счётчики
+    private volatile boolean historyLoaded;
+
+    /**
+     * Счётчики за день или за всё время.
+     */
+    public static final class Counters {
+        private long count;
+        private long scoreSum;
+        private final long[] levels = new long[MAX_LEVELS];
+        private final long[] bandCounts = new long[MAX_PARAMETERS * MAX_RANGES];
+        private final long[] bandScoreSums = new long[MAX_PARAMETERS * MAX_RANGES];
+
+        void add(int score, int level, int parameterCount, RangeIndex ranges) {
+            count++;
+            scoreSum += score;
+            if (level >= 0 && level < MAX_LEVELS) {
+                levels[level]++;
+            }
+            for (int p = 0; p < parameterCount && p < MAX_PARAMETERS; p++) {
+                int range = ranges.get(p);
+                if (range >= 0 && range < MAX_RANGES) {
+                    bandCounts[p * MAX_RANGES + range]++;
+                    bandScoreSums[p * MAX_RANGES + range] += score;
+                }
+            }
+        }
+
+        void merge(Counters other) {
+            count += other.count;
+            scoreSum += other.scoreSum;
+            for (int i = 0; i < MAX_LEVELS; i++) {
+                levels[i] += other.levels[i];
+            }
+            for (int i = 0; i < bandCounts.length; i++) {
+                bandCounts[i] += other.bandCounts[i];
+                bandScoreSums[i] += other.bandScoreSums[i];
+            }
+        }
+
+        Counters copy() {
+            Counters copy = new Counters();
+            copy.merge(this);
+            return copy;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public double getMeanScore() {
+            return count == 0 ? 0 : (double) scoreSum / count;
+        }
+
+        public long getLevelCount(int level) {
+            return level < MAX_LEVELS ? levels[level] : 0;
+        }
+
+        public long getBandCount(int parameter, int range) {
+            return parameter < MAX_PARAMETERS && range < MAX_RANGES ? bandCounts[parameter * MAX_RANGES + range] : 0;
+        }
+
+        public double getBandMeanScore(int parameter, int range) {
+            long n = getBandCount(parameter, range);
+            return n == 0 ? 0 : (double) bandScoreSums[parameter * MAX_RANGES + range] / n;
+        }
+    }
+
+    /**
+     * Снимок для ответа на /stats: итог за всё время и счётчики за последние дни, начиная с сегодняшнего.
+     */
+    public static final class Summary {
+        private final Counters total;
+        private final LocalDate[] dates;
+        private final Counters[] days;
+        private final boolean complete;
+
+        Summary(Counters total, LocalDate[] dates, Counters[] days, boolean complete) {
+            this.total = total;
+            this.dates = dates;
+            this.days = days;
+            this.complete = complete;
+        }
+
+        public Counters getTotal() {
+            return total;
+        }
+
+        public int getDayCount() {
+            return dates.length;
+        }
+
+        public LocalDate getDate(int index) {
+            return dates[index];
+        }
+
+        public Counters getDay(int index) {
+            return days[index];
+        }
+
+        /**
+         * false, пока история из журнала ещё загружается.
+         */
+        public boolean isComplete() {
+            return complete;
+        }
+    }
+
+    // Источник индексов диапазонов: результат расчёта или запись журнала
+    @FunctionalInterface
+    interface RangeIndex {
+        int get(int parameter);
+    }
+
+    public AssessmentStats(ZoneId zone) {
+        this.zone = zone.getRules();
+    }
+
+    /**
+     * Учитывает только что завершённую оценку.
+     */
+    public void record(long timeMillis, ScoringTable.Result result, int parameterCount) {
+        long day = dayOf(timeMillis);
+        synchronized (this) {
+            total.add(result.getScore(), result.getRiskLevelIndex(), parameterCount, result::getRangeIndex);
+            days.computeIfAbsent(day, d -> new Counters())
+                    .add(result.getScore(), result.getRiskLevelIndex(), parameterCount, result::getRangeIndex);
+        }
+    }
+
+    public synchronized Summary summary(LocalDate today, int dayCount) {
+        LocalDate[] dates = new LocalDate[dayCount];
+        Counters[] counters = new Counters[dayCount];
+        for (int i = 0; i < dayCount; i++) {
+            dates[i] = today.minusDays(i);
+            Counters day = days.get(dates[i].toEpochDay());
+            counters[i] = day == null ? new Counters() : day.copy();
+        }
+        return new Summary(total.copy(), dates, counters, historyLoaded);
+    }
+
+    public boolean isHistoryLoaded() {
+        return historyLoaded;
+    }
+
+    /**
+     * Добавляет к счётчикам первые records записей журнала — те, что были в нём до запуска.
+     * Оценки, учтённые через record, в этот диапазон не входят, поэтому ничего не считается дважды.
+     */
+    public void loadHistory(Path auditFile, long records) throws IOException {
+        try (AuditReader reader = new AuditReader(auditFile)) {
+            Map<Long, Counters> history = rebuild(reader, 0, Math.min(records, reader.size()));
+            synchronized (this) {
+                for (Map.Entry<Long, Counters> entry : history.entrySet()) {
+                    total.merge(entry.getValue());
+                    days.computeIfAbsent(entry.getKey(), d -> new Counters()).merge(entry.getValue());
+                }
+            }
+        } finally {
+            historyLoaded = true;
+        }
+    }
+
+    /**
+     * Полный пересчёт дневных счётчиков по записям [from, to) журнала параллельно в общем пуле fork-join.
+     */
+    Map<Long, Counters> rebuild(AuditReader reader, long from, long to) {
+        return ForkJoinPool.commonPool().invoke(new RebuildTask(reader, from, to));
+    }
+
+    private long dayOf(long timeMillis) {
+        long offset = zone.isFixedOffset()
+                ? zone.getOffset(Instant.EPOCH).getTotalSeconds()
+                : zone.getOffset(Instant.ofEpochMilli(timeMillis)).getTotalSeconds();
+        return Math.floorDiv(timeMillis + offset * 1000L, DAY_MILLIS);
+    }
+
+    // задачи пула живут только в памяти процесса и не сериализуются
+    @SuppressWarnings("serial")
+    private final class RebuildTask extends RecursiveTask<Map<Long, Counters>> {
+        private final AuditReader reader;
+        private final long from;
+        private final long to;
+
+        RebuildTask(AuditReader reader, long from, long to) {
+            this.reader = reader;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Map<Long, Counters> compute() {
+            if (to - from <= REBUILD_CHUNK) {
+                return scan();
+            }
+            long middle = (from + to) >>> 1;
+            RebuildTask left = new RebuildTask(reader, from, middle);
+            left.fork();
+            Map<Long, Counters> right = new RebuildTask(reader, middle, to).compute();
+            Map<Long, Counters> result = left.join();
+            for (Map.Entry<Long, Counters> entry : right.entrySet()) {
+                result.computeIfAbsent(entry.getKey(), d -> new Counters()).merge(entry.getValue());
+            }
+            return result;
+        }
+
+        // Записи идут по времени, поэтому счётчики дня меняются только на границе суток
+        private Map<Long, Counters> scan() {
+            Map<Long, Counters> result = new HashMap<>();
+            long currentDay = Long.MIN_VALUE;
+            Counters current = null;
+            long skipped = 0;
+            long[] record = new long[1];
+            RangeIndex ranges = p -> reader.getRangeIndex(record[0], p);
+            for (long i = from; i < to; i++) {
+                if (!reader.isValid(i)) {
+                    skipped++;
+                    continue;
+                }
+                long day = dayOf(reader.getTimeMillis(i));
+                if (day != currentDay) {
+                    currentDay = day;
+                    current = result.computeIfAbsent(day, d -> new Counters());
+                }
+                record[0] = i;
+                current.add(reader.getScore(i), reader.getRiskLevelIndex(i), reader.getValueCount(i), ranges);
+            }
+            if (skipped > 0) {
+                System.err.println("Статистика: пропущено повреждённых записей журнала: " + skipped);
+            }
+            return result;
+        }
+    }
+}
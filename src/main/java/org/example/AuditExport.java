@@ -0,0 +1,120 @@
+package org.example;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Выгрузка журнала оценок в CSV за промежуток времени:
+ * java -cp ... org.example.AuditExport audit.log 2026-01-01 2026-02-01 [январь.csv]
+ * Начало включается, конец нет; даты и время (2026-01-01T08:00) — в часовом поясе системы.
+ * Без имени файла CSV пишется в стандартный вывод. Названия столбцов значений берутся
+ * из текущей конфигурации (RISK_CONFIG или встроенной); версия конфигурации записи — в столбце config_version.
+ * risk_level — номер уровня в конфигурации записи, diagnosis — его название; название известно только
+ * для текущей и встроенной конфигураций, у записей других версий столбец пуст.
+ */
+public final class AuditExport {
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ISO_OFFSET_DATE_TIME;
+
+    private AuditExport() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3 || args.length > 4) {
+            System.err.println("Использование: AuditExport <журнал> <с> <по> [файл.csv]");
+            System.exit(2);
+        }
+        ZoneId zone = ZoneId.systemDefault();
+        long from;
+        long to;
+        try {
+            from = parseTime(args[1], zone);
+            to = parseTime(args[2], zone);
+        } catch (DateTimeParseException e) {
+            System.err.println("Неверная дата: " + e.getParsedString());
+            System.exit(2);
+            return;
+        }
+
+        Path configPath = RiskConfigHolder.configuredPath();
+        RiskDataStorage storage = configPath == null ? RiskDataStorage.builtin() : RiskDataStorage.load(configPath);
+
+        try (AuditReader reader = new AuditReader(Path.of(args[0]));
+             Writer out = args.length == 4
+                     ? Files.newBufferedWriter(Path.of(args[3]), StandardCharsets.UTF_8)
+                     : new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8))) {
+            long exported = export(reader, from, to, storage, zone, out);
+            out.flush();
+            System.err.println("Выгружено оценок: " + exported);
+        }
+    }
+
+    static long export(AuditReader reader, long fromMillis, long toMillis, RiskDataStorage storage, ZoneId zone,
+                       Writer out) throws IOException {
+        ParameterSchema schema = storage.getSchema();
+        Map<Long, ScoringTable> tables = new HashMap<>();
+        RiskDataStorage builtin = RiskDataStorage.builtin();
+        tables.put(builtin.getVersion(), builtin.getScoringTable());
+        tables.put(storage.getVersion(), storage.getScoringTable());
+
+        StringBuilder line = new StringBuilder(256);
+        line.append("time,chat_id,config_version,score,probability,risk_level,diagnosis");
+        for (int p = 0; p < AuditLog.MAX_VALUES && p < schema.size(); p++) {
+            line.append(',').append(schema.get(p).getKey());
+        }
+        out.write(line.append('\n').toString());
+
+        long exported = 0;
+        long skipped = 0;
+        for (long i = reader.lowerBound(fromMillis); i < reader.size(); i++) {
+            long time = reader.getTimeMillis(i);
+            if (time >= toMillis) {
+                break;
+            }
+            if (!reader.isValid(i)) {
+                skipped++;
+                continue;
+            }
+            ScoringTable table = tables.get(reader.getConfigVersion(i));
+            int level = reader.getRiskLevelIndex(i);
+            line.setLength(0);
+            line.append(TIME_FORMAT.format(Instant.ofEpochMilli(time).atZone(zone))).append(',')
+                    .append(reader.getChatId(i)).append(',')
+                    .append(Long.toUnsignedString(reader.getConfigVersion(i))).append(',')
+                    .append(reader.getScore(i)).append(',')
+                    .append(reader.getProbability(i)).append(',')
+                    .append(level).append(',');
+            if (table != null && level < table.getRiskLevelCount()) {
+                line.append(BatchAssessment.escape(table.getRiskLevel(level).getDiagnosis(), ','));
+            }
+            for (int p = 0; p < reader.getValueCount(i); p++) {
+                line.append(',').append(reader.getValue(i, p));
+            }
+            out.write(line.append('\n').toString());
+            exported++;
+        }
+        if (skipped > 0) {
+            System.err.println("Пропущено повреждённых записей: " + skipped);
+        }
+        return exported;
+    }
+
+    private static long parseTime(String text, ZoneId zone) {
+        LocalDateTime time = text.contains("T")
+                ? LocalDateTime.parse(text)
+                : LocalDate.parse(text).atStartOfDay();
+        return time.atZone(zone).toInstant().toEpochMilli();
+    }
+}
@@ -0,0 +1,264 @@
+package org.example;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.CRC32;
+
+/**
+ * Журнал завершённых оценок для клинического аудита.
+ * Файл только дописывается: заголовок FILE_HEADER_SIZE байт, затем записи фиксированной длины RECORD_SIZE,
+ * поэтому запись с номером i лежит по смещению FILE_HEADER_SIZE + i * RECORD_SIZE и читается без индекса
+ * (см. AuditReader). Время в записях не убывает, так что диапазон по времени ищется двоичным поиском.
+ * append кладёт запись в буфер и не ждёт диска; фоновый поток раз в COMMIT_INTERVAL пишет
+ * накопленное одним вызовом write и делает один force на всю пачку (group commit).
+ */
+public class AuditLog implements AutoCloseable {
+    static final int MAGIC = 0x4E524131; // "NRA1"
+    static final int FILE_HEADER_SIZE = 16;
+    static final int RECORD_SIZE = 112;
+    static final int MAX_VALUES = 8;
+
+    // Смещения полей внутри записи
+    static final int TIME = 0;
+    static final int CHAT = 8;
+    static final int VERSION = 16;
+    static final int PROBABILITY = 24;
+    static final int SCORE = 32;
+    static final int LEVEL = 34;
+    static final int COUNT = 35;
+    static final int RANGES = 36; // по байту на параметр
+    static final int VALUES = 44; // по double на параметр
+    static final int CRC = 108;   // CRC32 первых 108 байт
+
+    private static final long COMMIT_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(20);
+
+    private final Path path;
+    private final FileChannel channel;
+    private long size;
+    private long initialRecords;
+
+    // pending заполняют обработчики под блокировкой this, writing пишет фоновый поток
+    private ByteBuffer pending = ByteBuffer.allocate(RECORD_SIZE * 256);
+    private ByteBuffer writing = ByteBuffer.allocate(RECORD_SIZE * 256);
+    private final CRC32 crc = new CRC32();
+    private long lastTimeMillis;
+    private long appended;
+
+    private final Thread writer;
+    private volatile boolean running = true;
+    private volatile long committed;
+    private volatile long failures;
+    private volatile boolean failing;
+
+    public AuditLog(Path path) throws IOException {
+        this.path = path;
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        this.channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        open();
+
+        this.writer = new Thread(this::commitLoop, "audit-log");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Добавляет завершённую оценку; на диск она попадёт со следующей пачкой. Не ждёт ввода-вывода.
+     */
+    public void append(long chatId, long configVersion, ScoringTable.Result result, double[] values) {
+        if (values.length > MAX_VALUES) {
+            System.err.println("Журнал оценок: " + values.length + " параметров не помещаются в запись");
+            return;
+        }
+        synchronized (this) {
+            if (pending.remaining() < RECORD_SIZE) {
+                ByteBuffer larger = ByteBuffer.allocate(pending.capacity() * 2);
+                pending = larger.put(pending.flip());
+            }
+            // время не убывает, даже если системные часы перевели назад
+            lastTimeMillis = Math.max(lastTimeMillis, System.currentTimeMillis());
+
+            int start = pending.position();
+            pending.putLong(lastTimeMillis);
+            pending.putLong(chatId);
+            pending.putLong(configVersion);
+            pending.putDouble(result.getProbability());
+            pending.putShort((short) result.getScore());
+            pending.put((byte) result.getRiskLevelIndex());
+            pending.put((byte) values.length);
+            for (int i = 0; i < MAX_VALUES; i++) {
+                pending.put((byte) (i < values.length ? result.getRangeIndex(i) : -1));
+            }
+            for (int i = 0; i < MAX_VALUES; i++) {
+                pending.putDouble(i < values.length ? values[i] : 0);
+            }
+            crc.reset();
+            crc.update(pending.duplicate().position(start).limit(start + CRC));
+            pending.putInt((int) crc.getValue());
+            appended++;
+        }
+    }
+
+    /**
+     * Пишет всё накопленное и останавливает фоновый поток.
+     */
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * Число записей, бывших в файле при открытии; всё, что дальше, добавлено этим процессом.
+     */
+    public long getInitialRecords() {
+        return initialRecords;
+    }
+
+    // Метрики
+
+    public synchronized long getAppendedCount() {
+        return appended;
+    }
+
+    public long getCommittedCount() {
+        return committed;
+    }
+
+    public long getFileSize() {
+        return size;
+    }
+
+    /**
+     * Неудачные попытки записать пачку; записи при этом не теряются, а ждут повтора.
+     */
+    public long getFailureCount() {
+        return failures;
+    }
+
+    /**
+     * Последняя попытка записи не удалась — журнал отстаёт от оценок.
+     */
+    public boolean isFailing() {
+        return failing;
+    }
+
+    /**
+     * Добавленные, но ещё не записанные на диск оценки.
+     */
+    public synchronized long getBacklogCount() {
+        return appended - committed;
+    }
+
+    // Проверяет заголовок; хвост, оборванный при аварии, отрезается до целой записи
+    private void open() throws IOException {
+        long fileSize = channel.size();
+        if (fileSize == 0) {
+            ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+            header.putInt(MAGIC).putInt(RECORD_SIZE).putLong(System.currentTimeMillis()).flip();
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+            channel.force(true);
+            size = FILE_HEADER_SIZE;
+            return;
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+        channel.read(header, 0);
+        header.flip();
+        if (fileSize < FILE_HEADER_SIZE || header.getInt() != MAGIC || header.getInt() != RECORD_SIZE) {
+            throw new IOException(path + " не является журналом оценок");
+        }
+        long records = (fileSize - FILE_HEADER_SIZE) / RECORD_SIZE;
+        size = FILE_HEADER_SIZE + records * RECORD_SIZE;
+        initialRecords = records;
+        if (size < fileSize) {
+            System.err.println("Журнал оценок " + path + ": отброшено " + (fileSize - size) + " байт в конце");
+            channel.truncate(size);
+        }
+        if (records > 0) {
+            ByteBuffer time = ByteBuffer.allocate(8);
+            channel.read(time, size - RECORD_SIZE + TIME);
+            lastTimeMillis = time.flip().getLong();
+        }
+    }
+
+    private void commitLoop() {
+        while (true) {
+            boolean stopping = !running;
+            try {
+                commit();
+                if (failing) {
+                    failing = false;
+                    System.err.println("Запись журнала оценок восстановлена");
+                }
+            } catch (IOException e) {
+                failures++;
+                // повтор каждые COMMIT_INTERVAL; сообщение — только о начале сбоя
+                if (!failing || stopping) {
+                    System.err.println("Ошибка записи журнала оценок: " + e.getMessage());
+                }
+                failing = true;
+            }
+            if (stopping) {
+                return;
+            }
+            LockSupport.parkNanos(COMMIT_INTERVAL_NANOS);
+        }
+    }
+
+    // Меняет буферы местами и пишет пачку одним блоком с одним force.
+    // Пачка, которую не удалось записать, остаётся в writing и пишется заново до следующей смены буферов;
+    // новые записи тем временем копятся в pending.
+    private void commit() throws IOException {
+        while (true) {
+            if (writing.position() == 0) {
+                synchronized (this) {
+                    if (pending.position() == 0) {
+                        return;
+                    }
+                    ByteBuffer batch = pending;
+                    pending = writing;
+                    writing = batch;
+                }
+            }
+            ByteBuffer batch = writing.duplicate().flip();
+            int bytes = batch.remaining();
+            try {
+                while (batch.hasRemaining()) {
+                    channel.write(batch, size + batch.position());
+                }
+                channel.force(false);
+            } catch (IOException e) {
+                throw new IOException("не записано записей: " + bytes / RECORD_SIZE + ", "
+                        + (e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName()), e);
+            }
+            size += bytes;
+            committed += bytes / RECORD_SIZE;
+            writing.clear();
+        }
+    }
+}
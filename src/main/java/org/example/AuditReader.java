@@ -0,0 +1,127 @@
+package org.example;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Чтение журнала оценок через отображение файла в память.
+ * Записи фиксированной длины читаются по номеру прямо из отображения, без копирования и без объектов на запись,
+ * поэтому проход по миллионам записей упирается в скорость памяти.
+ * Видны записи, которые были на диске в момент открытия.
+ */
+public class AuditReader implements AutoCloseable {
+    // отображение ограничено 2 ГБ, поэтому большой файл делится на сегменты из целых записей
+    private static final int RECORDS_PER_SEGMENT = Integer.MAX_VALUE / AuditLog.RECORD_SIZE;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer[] segments;
+    private final long count;
+
+    public AuditReader(Path path) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            long fileSize = channel.size();
+            ByteBuffer header = ByteBuffer.allocate(AuditLog.FILE_HEADER_SIZE);
+            channel.read(header, 0);
+            header.flip();
+            if (fileSize < AuditLog.FILE_HEADER_SIZE || header.getInt() != AuditLog.MAGIC
+                    || header.getInt() != AuditLog.RECORD_SIZE) {
+                throw new IOException(path + " не является журналом оценок");
+            }
+            this.count = (fileSize - AuditLog.FILE_HEADER_SIZE) / AuditLog.RECORD_SIZE;
+            this.segments = new MappedByteBuffer[(int) ((count + RECORDS_PER_SEGMENT - 1) / RECORDS_PER_SEGMENT)];
+            for (int s = 0; s < segments.length; s++) {
+                long first = (long) s * RECORDS_PER_SEGMENT;
+                long records = Math.min(RECORDS_PER_SEGMENT, count - first);
+                segments[s] = channel.map(FileChannel.MapMode.READ_ONLY,
+                        AuditLog.FILE_HEADER_SIZE + first * AuditLog.RECORD_SIZE, records * AuditLog.RECORD_SIZE);
+            }
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public long size() {
+        return count;
+    }
+
+    /**
+     * Номер первой записи не раньше timeMillis (size(), если таких нет).
+     */
+    public long lowerBound(long timeMillis) {
+        long low = 0;
+        long high = count;
+        while (low < high) {
+            long middle = (low + high) >>> 1;
+            if (getTimeMillis(middle) < timeMillis) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    public boolean isValid(long record) {
+        ByteBuffer segment = segment(record);
+        int offset = offset(record);
+        CRC32 crc = new CRC32();
+        crc.update(segment.slice(offset, AuditLog.CRC));
+        return (int) crc.getValue() == segment.getInt(offset + AuditLog.CRC);
+    }
+
+    public long getTimeMillis(long record) {
+        return segment(record).getLong(offset(record) + AuditLog.TIME);
+    }
+
+    public long getChatId(long record) {
+        return segment(record).getLong(offset(record) + AuditLog.CHAT);
+    }
+
+    public long getConfigVersion(long record) {
+        return segment(record).getLong(offset(record) + AuditLog.VERSION);
+    }
+
+    public double getProbability(long record) {
+        return segment(record).getDouble(offset(record) + AuditLog.PROBABILITY);
+    }
+
+    public int getScore(long record) {
+        return segment(record).getShort(offset(record) + AuditLog.SCORE);
+    }
+
+    public int getRiskLevelIndex(long record) {
+        return segment(record).get(offset(record) + AuditLog.LEVEL);
+    }
+
+    public int getValueCount(long record) {
+        return segment(record).get(offset(record) + AuditLog.COUNT);
+    }
+
+    public int getRangeIndex(long record, int parameter) {
+        return segment(record).get(offset(record) + AuditLog.RANGES + parameter);
+    }
+
+    public double getValue(long record, int parameter) {
+        return segment(record).getDouble(offset(record) + AuditLog.VALUES + parameter * 8);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private ByteBuffer segment(long record) {
+        return segments[(int) (record / RECORDS_PER_SEGMENT)];
+    }
+
+    private static int offset(long record) {
+        return (int) (record % RECORDS_PER_SEGMENT) * AuditLog.RECORD_SIZE;
+    }
+}
@@ -0,0 +1,190 @@
+package org.example;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Пакетная оценка: все параметры одной строкой или CSV-файл с множеством пациентов.
+ * Файл обрабатывается построчно — в памяти держится только текущая строка.
+ */
+public final class BatchAssessment {
+    private final RiskDataStorage storage;
+
+    public BatchAssessment(RiskDataStorage storage) {
+        this.storage = storage;
+    }
+
+    /**
+     * Разбирает строку значений в порядке схемы и проверяет каждое.
+     * Возвращает null, если все значения корректны, иначе текст ошибки.
+     */
+    public String parseLine(String line, char delimiter, double[] out) {
+        ParameterSchema schema = storage.getSchema();
+        int start = 0;
+        for (int i = 0; i < schema.size(); i++) {
+            int end = line.indexOf(delimiter, start);
+            boolean last = i == schema.size() - 1;
+            if (end < 0 && !last) {
+                return "Ожидается " + schema.size() + " значений, получено " + (i + 1);
+            }
+            if (end >= 0 && last) {
+                return "Ожидается " + schema.size() + " значений, получено больше";
+            }
+            String field = line.substring(start, end < 0 ? line.length() : end).trim();
+            if (delimiter == ';') {
+                field = field.replace(',', '.'); // десятичная запятая в CSV из Excel
+            }
+
+            ParameterSchema.Parameter parameter = schema.get(i);
+            double value = parameter.getType().parse(field);
+            if (Double.isNaN(value)) {
+                return parameter.getLabel() + ": неверный формат \"" + field + "\"";
+            }
+            String error = checkValue(storage.getScoringTable(), parameter, value);
+            if (error != null) {
+                return parameter.getLabel() + ": " + error;
+            }
+            out[i] = value;
+            start = end + 1;
+        }
+        return null;
+    }
+
+    /**
+     * Проверяет значение одного параметра; возвращает null или текст ошибки.
+     */
+    public static String checkValue(ScoringTable table, ParameterSchema.Parameter parameter, double value) {
+        if (parameter.getType() == ParameterSchema.ValueType.FLAG) {
+            return value == 0 || value == 1 ? null : "Введите 0 или 1.";
+        }
+        if (table.findRange(parameter.getIndex(), value) < 0) {
+            return "Значение не в допустимом диапазоне. Пожалуйста, введите корректное значение.";
+        }
+        return null;
+    }
+
+    /**
+     * Считает всех пациентов из CSV и пишет результат в {@code out} по мере чтения.
+     * Строка заголовка (если первая строка не числовая) пропускается, разделитель — ',' или ';'.
+     */
+    public Summary processCsv(BufferedReader in, Writer out) throws IOException {
+        ParameterSchema schema = storage.getSchema();
+        ScoringTable table = storage.getScoringTable();
+        double[] values = new double[schema.size()];
+        ScoringTable.Result result = new ScoringTable.Result(schema.size());
+        Summary summary = new Summary();
+
+        String line = in.readLine();
+        if (line != null && line.startsWith("\uFEFF")) {
+            line = line.substring(1);
+        }
+        char delimiter = line != null && line.indexOf(';') >= 0 ? ';' : ',';
+        if (line != null && !line.isEmpty() && !isNumberStart(line.trim())) {
+            line = in.readLine();
+        }
+
+        for (int i = 0; i < schema.size(); i++) {
+            out.write(schema.get(i).getKey());
+            out.write(delimiter);
+        }
+        out.write("score" + delimiter + "probability" + delimiter + "risk_level" + delimiter + "error\n");
+
+        for (; line != null; line = in.readLine()) {
+            if (line.isBlank()) {
+                continue;
+            }
+            summary.rows++;
+            String error = parseLine(line, delimiter, values);
+            if (error == null) {
+                try {
+                    table.evaluate(values, result);
+                } catch (IllegalArgumentException e) {
+                    error = e.getMessage();
+                }
+            }
+
+            if (error != null) {
+                summary.errors++;
+                // ровно столько столбцов, сколько в заголовке: лишние поля отбрасываются, недостающие — пустые
+                int written = writeFields(out, line, delimiter, schema.size());
+                for (int i = written - 1; i < schema.size() + 3; i++) {
+                    out.write(delimiter);
+                }
+                out.write(escape(error, delimiter));
+            } else {
+                for (int i = 0; i < values.length; i++) {
+                    out.write(schema.get(i).getType() == ParameterSchema.ValueType.DECIMAL
+                            ? Double.toString(values[i]) : Long.toString((long) values[i]));
+                    out.write(delimiter);
+                }
+                out.write(Integer.toString(result.getScore()));
+                out.write(delimiter);
+                out.write(Double.toString(result.getProbability()));
+                out.write(delimiter);
+                out.write(escape(table.getRiskLevel(result.getRiskLevelIndex()).getDiagnosis(), delimiter));
+                out.write(delimiter);
+            }
+            out.write('\n');
+        }
+        out.flush();
+        return summary;
+    }
+
+    private static boolean isNumberStart(String line) {
+        if (line.isEmpty()) {
+            return false;
+        }
+        char c = line.charAt(0);
+        return (c >= '0' && c <= '9') || c == '-' || c == '+' || c == '.';
+    }
+
+    static int countFields(String line, char delimiter) {
+        int count = 1;
+        for (int i = 0; i < line.length(); i++) {
+            if (line.charAt(i) == delimiter) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Пишет не больше limit первых полей строки как есть; возвращает, сколько записано.
+     */
+    static int writeFields(Writer out, String line, char delimiter, int limit) throws IOException {
+        int fields = 1;
+        int end = 0;
+        while (end < line.length()) {
+            if (line.charAt(end) == delimiter) {
+                if (fields == limit) {
+                    break;
+                }
+                fields++;
+            }
+            end++;
+        }
+        out.write(line, 0, end);
+        return fields;
+    }
+
+    static String escape(String text, char delimiter) {
+        if (text.indexOf(delimiter) < 0 && text.indexOf('"') < 0) {
+            return text;
+        }
+        return '"' + text.replace("\"", "\"\"") + '"';
+    }
+
+    public static final class Summary {
+        private long rows;
+        private long errors;
+
+        public long getRows() {
+            return rows;
+        }
+
+        public long getErrors() {
+            return errors;
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package org.example;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import org.telegram.telegrambots.meta.api.methods.updates.SetWebhook;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+
+import java.io.IOException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Несколько ботов в одном процессе.
+ * Общие: пул обработки обновлений, HTTP-сервер webhook, точка сбора метрик,
+ * скомпилированные таблицы для одинаковых конфигураций (см. RiskDataStorage.load).
+ * У каждого бота свои конфигурация, сессии, журнал, исходящая очередь и префикс метрик.
+ * Остановка — shutdown: плавная, с общим сроком на всех ботов.
+ */
+public class BotHost implements AutoCloseable {
+    // Kubernetes по умолчанию даёт 30 с между SIGTERM и SIGKILL
+    public static final Duration DEFAULT_SHUTDOWN_TIMEOUT = Duration.ofSeconds(25);
+
+    private final ExecutorService updateExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private final List<RiskBot> bots = new ArrayList<>();
+    private final List<UpdatePoller> pollers = new ArrayList<>(); // по одному на бота в режиме long polling
+    private WebhookServer webhook;
+    private MetricsServer metricsServer;
+
+    public BotHost(List<Tenant> tenants) {
+        for (Tenant tenant : tenants) {
+            bots.add(new RiskBot(tenant, updateExecutor));
+        }
+    }
+
+    public List<RiskBot> getBots() {
+        return bots;
+    }
+
+    public void startLongPolling() throws TelegramApiException {
+        for (RiskBot bot : bots) {
+            bot.clearWebhook(); // getUpdates не работает, пока установлен webhook
+            UpdatePoller poller = new UpdatePoller(bot);
+            poller.start();
+            pollers.add(poller);
+        }
+        startMetrics();
+    }
+
+    /**
+     * Один сервер на всех: путь бота — basePath, а при нескольких ботах — basePath/id.
+     * secret — secret_token для проверки запросов; если не задан, а publicUrl задан, он создаётся случайным
+     * и передаётся Telegram в setWebhook. Без publicUrl webhook устанавливают снаружи — тогда секрет
+     * нужно задать тот же, что указан там, иначе запросы не проверяются.
+     */
+    public void startWebhook(int port, String basePath, String publicUrl, String secret)
+            throws IOException, TelegramApiException {
+        boolean register = publicUrl != null && !publicUrl.isBlank();
+        if (secret == null || secret.isBlank()) {
+            if (register) {
+                secret = randomSecret();
+            } else {
+                secret = null;
+                System.err.println("Webhook принимает запросы без проверки секрета: задайте WEBHOOK_SECRET");
+            }
+        }
+        webhook = new WebhookServer(port, secret);
+        for (RiskBot bot : bots) {
+            webhook.register(bot.getTenant().getWebhookPath(basePath), bot);
+        }
+        webhook.start();
+        startMetrics();
+
+        if (register) {
+            for (RiskBot bot : bots) {
+                bot.execute(new SecretSetWebhook(publicUrl + bot.getTenant().getWebhookPath(basePath), secret));
+            }
+        }
+    }
+
+    // 32 случайных байта; в secret_token допустимы A-Z, a-z, 0-9, _ и -
+    private static String randomSecret() {
+        byte[] bytes = new byte[32];
+        new SecureRandom().nextBytes(bytes);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    /**
+     * setWebhook с secret_token: SetWebhook библиотеки 6.0.1 этого поля (Bot API 6.1) не знает.
+     */
+    static final class SecretSetWebhook extends SetWebhook {
+        @JsonProperty("secret_token")
+        private final String secretToken;
+
+        SecretSetWebhook(String url, String secretToken) {
+            super(url);
+            this.secretToken = secretToken;
+        }
+
+        String getSecretToken() {
+            return secretToken;
+        }
+    }
+
+    public int getWebhookPort() {
+        return webhook.getPort();
+    }
+
+    private void startMetrics() {
+        List<BotMetrics> metrics = new ArrayList<>();
+        for (RiskBot bot : bots) {
+            metrics.add(bot.getMetrics());
+        }
+        metricsServer = MetricsServer.startFromEnv(metrics);
+    }
+
+    @Override
+    public void close() {
+        shutdown(DEFAULT_SHUTDOWN_TIMEOUT);
+    }
+
+    /**
+     * Плавная остановка (SIGTERM, перезапуск с передачей работы другому экземпляру), всё — в пределах timeout:
+     * 1. приём прекращается: webhook отвечает 503, и Telegram доставит обновление повторно, опрос больше
+     *    не передаёт обновления ботам — полученные, но не переданные остаются неподтверждёнными;
+     * 2. боты дорабатывают очереди, дописывают журналы сессий и аудита, отправляют ответы;
+     * 3. в режиме long polling подтверждается смещение: следующий экземпляр получит ровно то, что этот
+     *    не обработал, без повторных ответов на уже обработанное.
+     * Очереди ботов разбираются одновременно, поэтому ждём их по очереди с одним сроком.
+     * Если срок вышел, подтверждается смещение до самого раннего недоработанного обновления: лучше
+     * ответить повторно на несколько сообщений, чем потерять какое-то из них.
+     * Новый экземпляр в режиме long polling запускается после остановки старого: два опроса одновременно
+     * Telegram не допускает. В режиме webhook новый экземпляр можно поднять заранее.
+     */
+    public void shutdown(Duration timeout) {
+        long started = System.nanoTime();
+        long deadline = started + timeout.toNanos();
+        if (webhook != null) {
+            webhook.close(remainingNanos(deadline), TimeUnit.NANOSECONDS);
+        }
+        for (UpdatePoller poller : pollers) {
+            poller.stop();
+        }
+
+        long processedBefore = 0;
+        for (RiskBot bot : bots) {
+            processedBefore += bot.getDispatcher().getProcessedCount();
+        }
+        List<RiskBot> unfinished = new ArrayList<>();
+        for (RiskBot bot : bots) {
+            if (!bot.close(deadline)) {
+                unfinished.add(bot);
+            }
+        }
+        long drained = -processedBefore;
+        for (RiskBot bot : bots) {
+            drained += bot.getDispatcher().getProcessedCount();
+        }
+
+        for (UpdatePoller poller : pollers) {
+            poller.commit();
+        }
+        if (metricsServer != null) {
+            metricsServer.close();
+        }
+        updateExecutor.shutdown();
+
+        System.out.println("Остановка: доработано " + drained + " обновлений за "
+                + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started) + " мс");
+        for (RiskBot bot : unfinished) {
+            System.err.println("Бот " + bot.getTenant().getId() + " не успел остановиться за " + timeout.toSeconds()
+                    + " с: в очереди " + bot.getDispatcher().getQueueDepth() + " обновлений, не отправлено "
+                    + bot.getOutbound().getPendingCount() + " сообщений");
+        }
+    }
+
+    private static long remainingNanos(long deadline) {
+        return Math.max(0, deadline - System.nanoTime());
+    }
+}
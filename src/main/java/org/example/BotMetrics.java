@@ -0,0 +1,213 @@
+package org.example;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongSupplier;
+
+/**
+ * Метрики бота: гистограммы задержек по этапам обработки, счётчики команд и ошибок ввода,
+ * распределения уровней риска и баллов, а также показатели других компонентов (gauge).
+ * Запись — только атомарные операции над заранее созданными массивами;
+ * текст для Prometheus собирается лишь при запросе /metrics.
+ */
+public class BotMetrics {
+    public enum Stage {
+        PARSE, VALIDATE, SCORE, RENDER, HANDLE
+    }
+
+    public enum Command {
+        START, HELP, UNKNOWN, PARAMETER, LINE, DOCUMENT, STATS, BUTTON
+    }
+
+    public enum Failure {
+        FORMAT, RANGE, ERROR
+    }
+
+    // уровни риска и баллы за пределами массивов попадают в последнюю ячейку
+    private static final int MAX_LEVELS = 16;
+    private static final int MAX_SCORE = 64;
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private final String prefix;
+    private final LatencyHistogram[] stages = new LatencyHistogram[Stage.values().length];
+    private final AtomicLongArray commands = new AtomicLongArray(Command.values().length);
+    private final AtomicLongArray failures = new AtomicLongArray(Failure.values().length);
+    private final AtomicLongArray riskLevels = new AtomicLongArray(MAX_LEVELS);
+    private final AtomicLongArray scores = new AtomicLongArray(MAX_SCORE + 1);
+    private final AtomicLongArray assessments = new AtomicLongArray(2); // начато, завершено
+
+    private final List<NamedHistogram> histograms = new ArrayList<>();
+    private final List<Gauge> gauges = new ArrayList<>();
+
+    public BotMetrics(String prefix) {
+        this.prefix = prefix;
+        for (int i = 0; i < stages.length; i++) {
+            stages[i] = new LatencyHistogram();
+        }
+    }
+
+    public LatencyHistogram stage(Stage stage) {
+        return stages[stage.ordinal()];
+    }
+
+    public void command(Command command) {
+        commands.incrementAndGet(command.ordinal());
+    }
+
+    public void failure(Failure failure) {
+        failures.incrementAndGet(failure.ordinal());
+    }
+
+    public void assessmentStarted() {
+        assessments.incrementAndGet(0);
+    }
+
+    public void assessmentCompleted(ScoringTable.Result result) {
+        assessments.incrementAndGet(1);
+        riskLevels.incrementAndGet(Math.min(result.getRiskLevelIndex(), MAX_LEVELS - 1));
+        scores.incrementAndGet(Math.max(0, Math.min(result.getScore(), MAX_SCORE)));
+    }
+
+    /**
+     * Гистограмма другого компонента, например очереди диспетчера; выводится как этап с именем stage.
+     */
+    public void registerHistogram(String stage, LatencyHistogram histogram) {
+        histograms.add(new NamedHistogram(stage, histogram));
+    }
+
+    public void registerGauge(String name, String help, LongSupplier value) {
+        gauges.add(new Gauge(name, help, value, false));
+    }
+
+    /**
+     * Показатель-длительность: value — наносекунды, выводятся секунды.
+     */
+    public void registerDurationGauge(String name, String help, LongSupplier nanos) {
+        gauges.add(new Gauge(name, help, nanos, true));
+    }
+
+    public long getCommandCount(Command command) {
+        return commands.get(command.ordinal());
+    }
+
+    public long getFailureCount(Failure failure) {
+        return failures.get(failure.ordinal());
+    }
+
+    public long getStartedCount() {
+        return assessments.get(0);
+    }
+
+    public long getCompletedCount() {
+        return assessments.get(1);
+    }
+
+    /**
+     * Текстовый формат Prometheus 0.0.4.
+     */
+    public void writePrometheus(StringBuilder out) {
+        String latency = prefix + "_stage_latency_seconds";
+        header(out, latency, "Время этапов обработки обновления", "summary");
+        for (Stage stage : Stage.values()) {
+            writeSummary(out, latency, stage.name().toLowerCase(Locale.ROOT), stages[stage.ordinal()]);
+        }
+        for (NamedHistogram histogram : histograms) {
+            writeSummary(out, latency, histogram.stage, histogram.histogram);
+        }
+
+        String commandsName = prefix + "_commands_total";
+        header(out, commandsName, "Обработанные сообщения по виду", "counter");
+        for (Command command : Command.values()) {
+            sample(out, commandsName, "command", command.name().toLowerCase(Locale.ROOT), commands.get(command.ordinal()));
+        }
+
+        String failuresName = prefix + "_input_failures_total";
+        header(out, failuresName, "Отклонённый ввод по причине", "counter");
+        for (Failure failure : Failure.values()) {
+            sample(out, failuresName, "reason", failure.name().toLowerCase(Locale.ROOT), failures.get(failure.ordinal()));
+        }
+
+        header(out, prefix + "_assessments_started_total", "Начатые оценки", "counter");
+        out.append(prefix).append("_assessments_started_total ").append(assessments.get(0)).append('\n');
+        header(out, prefix + "_assessments_completed_total", "Завершённые оценки", "counter");
+        out.append(prefix).append("_assessments_completed_total ").append(assessments.get(1)).append('\n');
+
+        String levelsName = prefix + "_risk_level_total";
+        header(out, levelsName, "Результаты оценки по уровню риска", "counter");
+        for (int i = 0; i < MAX_LEVELS; i++) {
+            if (riskLevels.get(i) > 0) {
+                sample(out, levelsName, "level", Integer.toString(i), riskLevels.get(i));
+            }
+        }
+
+        String scoresName = prefix + "_score_total";
+        header(out, scoresName, "Результаты оценки по баллу", "counter");
+        for (int i = 0; i <= MAX_SCORE; i++) {
+            if (scores.get(i) > 0) {
+                sample(out, scoresName, "score", Integer.toString(i), scores.get(i));
+            }
+        }
+
+        for (Gauge gauge : gauges) {
+            String name = prefix + "_" + gauge.name;
+            header(out, name, gauge.help, name.endsWith("_total") ? "counter" : "gauge");
+            out.append(name).append(' ');
+            if (gauge.seconds) {
+                out.append(seconds(gauge.value.getAsLong()));
+            } else {
+                out.append(gauge.value.getAsLong());
+            }
+            out.append('\n');
+        }
+    }
+
+    private static void header(StringBuilder out, String name, String help, String type) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void sample(StringBuilder out, String name, String label, String value, long count) {
+        out.append(name).append('{').append(label).append("=\"").append(value).append("\"} ").append(count).append('\n');
+    }
+
+    private static void writeSummary(StringBuilder out, String name, String stage, LatencyHistogram histogram) {
+        for (double q : QUANTILES) {
+            out.append(name).append("{stage=\"").append(stage).append("\",quantile=\"").append(q).append("\"} ")
+                    .append(seconds(histogram.quantileNanos(q))).append('\n');
+        }
+        out.append(name).append("_sum{stage=\"").append(stage).append("\"} ")
+                .append(seconds(histogram.getSumNanos())).append('\n');
+        out.append(name).append("_count{stage=\"").append(stage).append("\"} ")
+                .append(histogram.getCount()).append('\n');
+    }
+
+    private static double seconds(long nanos) {
+        return nanos / 1e9;
+    }
+
+    private static final class NamedHistogram {
+        private final String stage;
+        private final LatencyHistogram histogram;
+
+        NamedHistogram(String stage, LatencyHistogram histogram) {
+            this.stage = stage;
+            this.histogram = histogram;
+        }
+    }
+
+    private static final class Gauge {
+        private final String name;
+        private final String help;
+        private final LongSupplier value;
+        private final boolean seconds;
+
+        Gauge(String name, String help, LongSupplier value, boolean seconds) {
+            this.name = name;
+            this.help = help;
+            this.value = value;
+            this.seconds = seconds;
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package org.example;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Пакетный пересчёт когорты: логит, вероятность, баллы Хермансена и уровень риска для многих пациентов сразу,
+ * например при пересчёте истории после смены коэффициентов.
+ * Значения передаются по столбцам: columns[параметр][пациент], параметры в порядке схемы.
+ * Логит и баллы считаются Vector API, если модуль подключён (java --add-modules jdk.incubator.vector),
+ * иначе скалярными циклами по столбцам. Math.exp — по одному вызову на пациента в обоих случаях.
+ * Результаты совпадают со ScoringTable.evaluate и ScoringTable.logit бит в бит.
+ * Пакеты больше CHUNK строк делятся на куски и считаются в общем пуле fork-join.
+ */
+public final class BulkScorer {
+    static final boolean VECTOR_AVAILABLE = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+    private static final int CHUNK = 8 * 1024;
+
+    private final ScoringTable table;
+    private final boolean vectorized;
+    private final double intercept;
+    private final double[] coefficients;
+    private final double[][] boundaries;
+    private final double[][] atBoundary;
+    private final double[][] between;
+
+    public BulkScorer(ScoringTable table) {
+        this(table, VECTOR_AVAILABLE);
+    }
+
+    BulkScorer(ScoringTable table, boolean vectorized) {
+        this.table = table;
+        this.vectorized = vectorized && VECTOR_AVAILABLE;
+        this.intercept = table.getIntercept();
+        this.coefficients = table.getCoefficients();
+        int parameters = table.parameterCount();
+        this.boundaries = new double[parameters][];
+        this.atBoundary = new double[parameters][];
+        this.between = new double[parameters][];
+        for (int p = 0; p < parameters; p++) {
+            boundaries[p] = table.getBoundaries(p);
+            atBoundary[p] = table.getScoresAtBoundaries(p);
+            between[p] = table.getScoresBetweenBoundaries(p);
+        }
+    }
+
+    public boolean isVectorized() {
+        return vectorized;
+    }
+
+    /**
+     * Результаты по пациентам; у пациента со значением вне диапазонов балл и уровень равны -1.
+     */
+    public static final class Results {
+        private final double[] logits;
+        private final double[] probabilities;
+        private final int[] scores;
+        private final int[] riskLevels;
+
+        public Results(int size) {
+            this.logits = new double[size];
+            this.probabilities = new double[size];
+            this.scores = new int[size];
+            this.riskLevels = new int[size];
+        }
+
+        public int size() {
+            return scores.length;
+        }
+
+        public double[] getLogits() {
+            return logits;
+        }
+
+        public double[] getProbabilities() {
+            return probabilities;
+        }
+
+        public int[] getScores() {
+            return scores;
+        }
+
+        public int[] getRiskLevels() {
+            return riskLevels;
+        }
+    }
+
+    public Results evaluate(double[][] columns) {
+        Results results = new Results(columns.length == 0 ? 0 : columns[0].length);
+        evaluate(columns, results);
+        return results;
+    }
+
+    public void evaluate(double[][] columns, Results out) {
+        if (columns.length != coefficients.length) {
+            throw new IllegalArgumentException("Ожидалось столбцов: " + coefficients.length + ", передано: "
+                    + columns.length);
+        }
+        for (double[] column : columns) {
+            if (column.length < out.size()) {
+                throw new IllegalArgumentException("Столбец короче пакета: " + column.length);
+            }
+        }
+        if (out.size() <= CHUNK) {
+            evaluate(columns, 0, out.size(), out, new double[out.size()]);
+        } else {
+            ForkJoinPool.commonPool().invoke(new ChunkTask(columns, 0, out.size(), out));
+        }
+    }
+
+    private void evaluate(double[][] columns, int from, int to, Results out, double[] scoreSums) {
+        double[] logits = out.logits;
+        if (vectorized) {
+            VectorKernels.logits(intercept, coefficients, columns, from, to, logits);
+            VectorKernels.scores(boundaries, atBoundary, between, columns, from, to, scoreSums);
+        } else {
+            // по столбцам: внутренний цикл идёт по пациентам подряд
+            Arrays.fill(logits, from, to, intercept);
+            for (int p = 0; p < coefficients.length; p++) {
+                double coefficient = coefficients[p];
+                double[] column = columns[p];
+                for (int i = from; i < to; i++) {
+                    logits[i] += coefficient * column[i];
+                }
+            }
+            for (int i = from; i < to; i++) {
+                scoreSums[i - from] = scalarScore(boundaries, atBoundary, between, columns, i);
+            }
+        }
+
+        for (int i = from; i < to; i++) {
+            double exp = Math.exp(logits[i]);
+            out.probabilities[i] = exp / (1 + exp);
+            double sum = scoreSums[i - from];
+            int score = Double.isNaN(sum) ? -1 : (int) sum;
+            out.scores[i] = score;
+            out.riskLevels[i] = score < 0 ? -1 : table.riskLevelOf(score);
+        }
+    }
+
+    // Та же ступенчатая функция, что в VectorKernels.scores, для одного пациента
+    static double scalarScore(double[][] boundaries, double[][] atBoundary, double[][] between,
+                              double[][] columns, int row) {
+        double total = 0;
+        for (int p = 0; p < boundaries.length; p++) {
+            int k = Arrays.binarySearch(boundaries[p], columns[p][row] + 0.0);
+            total += k >= 0 ? atBoundary[p][k] : between[p][-k - 1];
+        }
+        return total;
+    }
+
+    // задачи пула живут только в памяти процесса и не сериализуются
+    @SuppressWarnings("serial")
+    private final class ChunkTask extends RecursiveAction {
+        private final double[][] columns;
+        private final int from;
+        private final int to;
+        private final Results out;
+
+        ChunkTask(double[][] columns, int from, int to, Results out) {
+            this.columns = columns;
+            this.from = from;
+            this.to = to;
+            this.out = out;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= CHUNK) {
+                evaluate(columns, from, to, out, new double[to - from]);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new ChunkTask(columns, from, middle, out), new ChunkTask(columns, middle, to, out));
+        }
+    }
+}
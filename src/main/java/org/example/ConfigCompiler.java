@@ -0,0 +1,185 @@
+package org.example;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Двоичная форма конфигурации риска для быстрого запуска.
+ * При сборке (exec-maven-plugin, фаза process-classes) risk_config.json переводится в risk_config.bin;
+ * при старте он читается DataInputStream, без привязки Jackson и рефлексии.
+ * В заголовке хранится CRC32 исходного JSON: если JSON изменился, а .bin нет, файл игнорируется.
+ * Для внешних конфигураций (RISK_CONFIG) рядом можно положить <файл>.bin:
+ * java -cp ... org.example.ConfigCompiler north.json north.json.bin
+ */
+public final class ConfigCompiler {
+    private static final int MAGIC = 0x4E524331; // "NRC1"
+
+    private ConfigCompiler() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Использование: ConfigCompiler <risk_config.json> <risk_config.bin>");
+            System.exit(2);
+        }
+        Path source = Path.of(args[0]);
+        Path target = Path.of(args[1]);
+        byte[] content = Files.readAllBytes(source);
+
+        // проверяем конфигурацию целиком, как при обычной загрузке
+        new RiskDataStorage(content);
+        RiskDataStorage.Config config = new ObjectMapper().readValue(content, RiskDataStorage.Config.class);
+
+        CRC32 crc = new CRC32();
+        crc.update(content);
+        if (target.getParent() != null) {
+            Files.createDirectories(target.getParent());
+        }
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(target))) {
+            write(config, crc.getValue(), out);
+        }
+        System.out.println("Конфигурация " + source + " скомпилирована в " + target);
+    }
+
+    static Path compiledPath(Path source) {
+        return source.resolveSibling(source.getFileName() + ".bin");
+    }
+
+    static RiskDataStorage.Config readResource(String resource, long sourceCrc) {
+        try (InputStream in = ConfigCompiler.class.getResourceAsStream(resource)) {
+            return in == null ? null : read(in, sourceCrc);
+        } catch (IOException e) {
+            System.err.println("Двоичная конфигурация " + resource + " не прочитана: " + e.getMessage());
+            return null;
+        }
+    }
+
+    static RiskDataStorage.Config readFile(Path path, long sourceCrc) {
+        try (InputStream in = Files.newInputStream(path)) {
+            return read(in, sourceCrc);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            System.err.println("Двоичная конфигурация " + path + " не прочитана: " + e.getMessage());
+            return null;
+        }
+    }
+
+    static void write(RiskDataStorage.Config config, long sourceCrc, OutputStream target) throws IOException {
+        DataOutputStream out = new DataOutputStream(target);
+        out.writeInt(MAGIC);
+        out.writeLong(sourceCrc);
+
+        out.writeInt(config.getParameters().size());
+        for (Map.Entry<String, RiskDataStorage.ParameterConfig> entry : config.getParameters().entrySet()) {
+            RiskDataStorage.ParameterConfig parameter = entry.getValue();
+            out.writeUTF(entry.getKey());
+            out.writeInt(parameter.getOrder());
+            out.writeByte(parameter.getType() == null ? -1 : parameter.getType().ordinal());
+            writeString(out, parameter.getPrompt());
+            writeString(out, parameter.getLabel());
+            writeString(out, parameter.getUnit());
+            writeString(out, parameter.getDescription());
+            out.writeInt(parameter.getRanges().size());
+            for (RiskDataStorage.Range range : parameter.getRanges()) {
+                out.writeDouble(range.getMin());
+                out.writeDouble(range.getMax());
+                out.writeInt(range.getScore());
+                writeString(out, range.getComment());
+            }
+        }
+
+        out.writeInt(config.getRiskLevels().size());
+        for (RiskDataStorage.RiskLevel level : config.getRiskLevels()) {
+            out.writeInt(level.getMinScore());
+            out.writeInt(level.getMaxScore());
+            writeString(out, level.getDiagnosis());
+            writeString(out, level.getRecommendation());
+            writeString(out, level.getProbabilityRange());
+        }
+
+        RiskDataStorage.ProbabilityFormula formula = config.getProbabilityFormula();
+        out.writeDouble(formula.getIntercept());
+        out.writeInt(formula.getCoefficients().size());
+        for (Map.Entry<String, Double> entry : formula.getCoefficients().entrySet()) {
+            out.writeUTF(entry.getKey());
+            out.writeDouble(entry.getValue());
+        }
+        out.flush();
+    }
+
+    /**
+     * Возвращает null, если файл собран из другой версии JSON.
+     */
+    static RiskDataStorage.Config read(InputStream source, long sourceCrc) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(source));
+        if (in.readInt() != MAGIC) {
+            throw new IOException("неизвестный формат");
+        }
+        if (in.readLong() != sourceCrc) {
+            return null;
+        }
+
+        ParameterSchema.ValueType[] types = ParameterSchema.ValueType.values();
+        int parameterCount = in.readInt();
+        Map<String, RiskDataStorage.ParameterConfig> parameters = new LinkedHashMap<>();
+        for (int p = 0; p < parameterCount; p++) {
+            String key = in.readUTF();
+            int order = in.readInt();
+            int type = in.readByte();
+            String prompt = readString(in);
+            String label = readString(in);
+            String unit = readString(in);
+            String description = readString(in);
+            int rangeCount = in.readInt();
+            List<RiskDataStorage.Range> ranges = new ArrayList<>(rangeCount);
+            for (int r = 0; r < rangeCount; r++) {
+                ranges.add(new RiskDataStorage.Range(in.readDouble(), in.readDouble(), in.readInt(), readString(in)));
+            }
+            parameters.put(key, new RiskDataStorage.ParameterConfig(order, type < 0 ? null : types[type],
+                    prompt, label, ranges, unit, description));
+        }
+
+        int levelCount = in.readInt();
+        List<RiskDataStorage.RiskLevel> levels = new ArrayList<>(levelCount);
+        for (int l = 0; l < levelCount; l++) {
+            levels.add(new RiskDataStorage.RiskLevel(in.readInt(), in.readInt(),
+                    readString(in), readString(in), readString(in)));
+        }
+
+        double intercept = in.readDouble();
+        int coefficientCount = in.readInt();
+        Map<String, Double> coefficients = new LinkedHashMap<>();
+        for (int c = 0; c < coefficientCount; c++) {
+            coefficients.put(in.readUTF(), in.readDouble());
+        }
+        return new RiskDataStorage.Config(parameters, levels,
+                new RiskDataStorage.ProbabilityFormula(intercept, coefficients));
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
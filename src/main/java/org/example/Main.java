@@ -1,18 +1,48 @@
 package org.example;
 
-import org.telegram.telegrambots.meta.TelegramBotsApi;
-import org.telegram.telegrambots.updatesreceivers.DefaultBotSession;
 import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
 
+import java.io.IOException;
+import java.time.Duration;
+
 public class Main {
-    public static void main(String[] args) {
+    public static void main(String[] args) throws Exception {
+        StartupTimer.mainStarted();
+        // -Dbot.training=true — прогон без сети для архива AppCDS, см. TrainingRun
+        if (Boolean.getBoolean("bot.training")) {
+            TrainingRun.run();
+            return;
+        }
+        // SHUTDOWN_TIMEOUT — секунды на доработку очередей при SIGTERM, см. BotHost.shutdown
+        String timeout = System.getenv("SHUTDOWN_TIMEOUT");
+        Duration shutdownTimeout = timeout == null || timeout.isBlank()
+                ? BotHost.DEFAULT_SHUTDOWN_TIMEOUT : Duration.ofSeconds(Long.parseLong(timeout.trim()));
+        // TENANTS_CONFIG — несколько ботов в одном процессе, см. Tenant
+        BotHost host = new BotHost(Tenant.load());
         try {
-            TelegramBotsApi botsApi = new TelegramBotsApi(DefaultBotSession.class);
-            botsApi.registerBot(new RiskBot());
-            System.out.println("Бот успешно запущен!");
-        } catch (TelegramApiException e) {
+            // BOT_MODE=webhook — приём обновлений встроенным HTTP-сервером, иначе long polling
+            if ("webhook".equalsIgnoreCase(System.getenv("BOT_MODE"))) {
+                startWebhook(host);
+            } else {
+                host.startLongPolling();
+                StartupTimer.ready("опрос обновлений");
+                System.out.println("Бот успешно запущен!");
+            }
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> host.shutdown(shutdownTimeout), "bot-shutdown"));
+        } catch (IOException | TelegramApiException e) {
             e.printStackTrace();
             System.err.println("Ошибка при запуске бота");
+            host.close();
         }
     }
-}
\ No newline at end of file
+
+    // WEBHOOK_PORT и WEBHOOK_PATH — где слушать; WEBHOOK_URL — внешний адрес, который сообщается Telegram;
+    // WEBHOOK_SECRET — secret_token для проверки запросов (без него при заданном WEBHOOK_URL создаётся случайный)
+    private static void startWebhook(BotHost host) throws IOException, TelegramApiException {
+        int port = Integer.parseInt(System.getenv().getOrDefault("WEBHOOK_PORT", "8080"));
+        String path = System.getenv().getOrDefault("WEBHOOK_PATH", "/webhook");
+        host.startWebhook(port, path, System.getenv("WEBHOOK_URL"), System.getenv("WEBHOOK_SECRET"));
+        StartupTimer.ready("приём webhook");
+        System.out.println("Бот успешно запущен в режиме webhook на порту " + host.getWebhookPort());
+    }
+}
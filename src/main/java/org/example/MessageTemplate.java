@@ -0,0 +1,83 @@
+package org.example;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Шаблон сообщения с подстановками вида {name}, разобранный один раз.
+ * Известные заранее подстановки связываются через bind — шаблон при этом сворачивается в литералы,
+ * и при отправке остаётся дописать только действительно меняющиеся значения.
+ */
+final class MessageTemplate {
+    // literals.length == names.length + 1: literal[0] {names[0]} literal[1] ...
+    private final String[] literals;
+    private final String[] names;
+
+    private MessageTemplate(String[] literals, String[] names) {
+        this.literals = literals;
+        this.names = names;
+    }
+
+    static MessageTemplate compile(String text) {
+        List<String> literals = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        int start = 0;
+        int open;
+        while ((open = text.indexOf('{', start)) >= 0) {
+            int close = text.indexOf('}', open);
+            if (close < 0) {
+                throw new IllegalArgumentException("Незакрытая подстановка в шаблоне: " + text);
+            }
+            literals.add(text.substring(start, open));
+            names.add(text.substring(open + 1, close));
+            start = close + 1;
+        }
+        literals.add(text.substring(start));
+        return new MessageTemplate(literals.toArray(new String[0]), names.toArray(new String[0]));
+    }
+
+    /**
+     * Подставляет значение во все вхождения name и возвращает новый, более короткий шаблон.
+     */
+    MessageTemplate bind(String name, Object value) {
+        List<String> literals = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        StringBuilder current = new StringBuilder(this.literals[0]);
+        for (int i = 0; i < this.names.length; i++) {
+            if (this.names[i].equals(name)) {
+                current.append(value).append(this.literals[i + 1]);
+            } else {
+                literals.add(current.toString());
+                names.add(this.names[i]);
+                current.setLength(0);
+                current.append(this.literals[i + 1]);
+            }
+        }
+        literals.add(current.toString());
+        return new MessageTemplate(literals.toArray(new String[0]), names.toArray(new String[0]));
+    }
+
+    /**
+     * Проверяет, что после связывания остались ровно указанные подстановки в указанном порядке.
+     */
+    MessageTemplate expect(String... remaining) {
+        if (!Arrays.equals(names, remaining)) {
+            throw new IllegalStateException("Шаблон содержит подстановки " + Arrays.toString(names)
+                    + ", ожидались " + Arrays.toString(remaining));
+        }
+        return this;
+    }
+
+    /**
+     * Текст полностью связанного шаблона.
+     */
+    String text() {
+        expect();
+        return literals[0];
+    }
+
+    String literal(int index) {
+        return literals[index];
+    }
+}
@@ -0,0 +1,428 @@
+package org.example;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.text.DecimalFormatSymbols;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Тексты ответов бота, скомпилированные для одного снимка конфигурации.
+ * Постоянные сообщения хранятся готовыми строками; в результатах оценки заранее собрано всё,
+ * что зависит только от уровня риска и диапазона параметра, а при отправке дописываются балл и значения.
+ * Тексты берутся из messages_<язык>.json (язык — переменная окружения BOT_LOCALE, по умолчанию ru).
+ * Файл — плоский объект "имя": "текст"; он читается собственным разбором, а не Jackson,
+ * чтобы запуск со скомпилированной конфигурацией не загружал Jackson вовсе.
+ */
+public final class MessageTemplates {
+    private static final Map<String, String> MESSAGES = loadMessages(
+            System.getenv().getOrDefault("BOT_LOCALE", "ru"));
+
+    // String.format("%.1f") берёт десятичный разделитель из локали по умолчанию — делаем так же
+    private static final Locale FORMAT_LOCALE = Locale.getDefault(Locale.Category.FORMAT);
+    private static final DecimalFormatSymbols SYMBOLS = DecimalFormatSymbols.getInstance(FORMAT_LOCALE);
+    private static final DateTimeFormatter DAY_FORMAT = DateTimeFormatter.ofPattern("dd.MM");
+
+    private final String welcome;
+    private final String firstParameter;
+    private final String help;
+    private final String unknownCommand;
+    private final String staleButton;
+    private final String invalidFormat;
+    private final String rateLimited;
+    private final String busy;
+    private final String[] nextParameter;
+    private final MessageTemplate[] choice;          // остаётся {choice}
+
+    private final MessageTemplate[] headerByLevel;   // остаётся {score}
+    private final String[] footerByLevel;
+    private final MessageTemplate[][] detailByRange; // [параметр][диапазон], остаётся {value}
+
+    private final String statsEmpty;
+    private final String statsIncomplete;
+    private final MessageTemplate statsHeader;
+    private final MessageTemplate statsTrendHeader;
+    private final MessageTemplate statsDay;
+    private final String statsBandsHeader;
+    private final MessageTemplate[] statsLevel;      // остаются {count} и {percent}
+    private final MessageTemplate[][] statsBand;     // [параметр][диапазон], остаются {count} и {meanScore}
+
+    MessageTemplates(ParameterSchema schema, ScoringTable table) {
+        String firstPrompt = schema.get(0).getPrompt();
+
+        this.welcome = template("welcome").bind("firstPrompt", firstPrompt).text();
+        this.firstParameter = template("firstParameter").bind("firstPrompt", firstPrompt).text();
+        this.help = template("help").text();
+        this.unknownCommand = template("unknownCommand").text();
+        this.staleButton = template("staleButton").text();
+        this.invalidFormat = template("invalidFormat").text();
+        this.rateLimited = template("rateLimited").text();
+        this.busy = template("busy").text();
+
+        this.nextParameter = new String[schema.size()];
+        MessageTemplate next = template("nextParameter");
+        for (int i = 0; i < schema.size(); i++) {
+            nextParameter[i] = next.bind("prompt", schema.get(i).getPrompt()).text();
+        }
+
+        MessageTemplate chosen = template("buttonChoice");
+        this.choice = new MessageTemplate[schema.size()];
+        for (int i = 0; i < schema.size(); i++) {
+            choice[i] = chosen.bind("label", schema.get(i).getLabel()).expect("choice");
+        }
+
+        MessageTemplate header = template("assessmentHeader");
+        MessageTemplate footer = template("assessmentFooter");
+        this.headerByLevel = new MessageTemplate[table.getRiskLevelCount()];
+        this.footerByLevel = new String[table.getRiskLevelCount()];
+        for (int l = 0; l < headerByLevel.length; l++) {
+            RiskDataStorage.RiskLevel level = table.getRiskLevel(l);
+            headerByLevel[l] = header
+                    .bind("diagnosis", level.getDiagnosis())
+                    .bind("probabilityRange", level.getProbabilityRange())
+                    .expect("score");
+            footerByLevel[l] = footer.bind("recommendation", level.getRecommendation()).text();
+        }
+
+        MessageTemplate detail = template("assessmentDetail");
+        this.detailByRange = new MessageTemplate[schema.size()][];
+        for (int p = 0; p < schema.size(); p++) {
+            ParameterSchema.Parameter parameter = schema.get(p);
+            int rangeCount = parameter.getConfig().getRanges().size();
+            detailByRange[p] = new MessageTemplate[rangeCount];
+            for (int r = 0; r < rangeCount; r++) {
+                RiskDataStorage.Range range = table.getRange(p, r);
+                detailByRange[p][r] = detail
+                        .bind("label", parameter.getLabel())
+                        .bind("unit", parameter.getConfig().getUnit())
+                        .bind("comment", range.getComment())
+                        .bind("points", range.getScore())
+                        .expect("value");
+            }
+        }
+
+        this.statsEmpty = template("statsEmpty").text();
+        this.statsIncomplete = template("statsIncomplete").text();
+        this.statsHeader = template("statsHeader").expect("count", "meanScore");
+        this.statsTrendHeader = template("statsTrendHeader").expect("days");
+        this.statsDay = template("statsDay").expect("date", "count", "meanScore");
+        this.statsBandsHeader = template("statsBandsHeader").text();
+        MessageTemplate level = template("statsLevel");
+        this.statsLevel = new MessageTemplate[table.getRiskLevelCount()];
+        for (int l = 0; l < statsLevel.length; l++) {
+            statsLevel[l] = level.bind("diagnosis", table.getRiskLevel(l).getDiagnosis()).expect("count", "percent");
+        }
+        MessageTemplate band = template("statsBand");
+        this.statsBand = new MessageTemplate[schema.size()][];
+        for (int p = 0; p < schema.size(); p++) {
+            statsBand[p] = new MessageTemplate[detailByRange[p].length];
+            for (int r = 0; r < statsBand[p].length; r++) {
+                statsBand[p][r] = band
+                        .bind("label", schema.get(p).getLabel())
+                        .bind("comment", table.getRange(p, r).getComment())
+                        .expect("count", "meanScore");
+            }
+        }
+    }
+
+    public String welcome() {
+        return welcome;
+    }
+
+    public String firstParameter() {
+        return firstParameter;
+    }
+
+    public String help() {
+        return help;
+    }
+
+    public String unknownCommand() {
+        return unknownCommand;
+    }
+
+    public String staleButton() {
+        return staleButton;
+    }
+
+    public String invalidFormat() {
+        return invalidFormat;
+    }
+
+    public String rateLimited() {
+        return rateLimited;
+    }
+
+    public String busy() {
+        return busy;
+    }
+
+    public String nextParameter(int index) {
+        return nextParameter[index];
+    }
+
+    /**
+     * Дописывает строку о значении, выбранном кнопкой; ею начинается отредактированное сообщение.
+     */
+    public void appendChoice(StringBuilder out, int index, String choiceLabel) {
+        MessageTemplate template = choice[index];
+        out.append(template.literal(0)).append(choiceLabel).append(template.literal(1));
+    }
+
+    /**
+     * Дописывает текст результата оценки в {@code out}.
+     */
+    public void renderAssessment(StringBuilder out, ScoringTable.Result result, double[] values) {
+        ResultCache.Entry cached = result.getCached();
+        if (cached != null) {
+            String[] segments = cached.getSegments();
+            out.append(segments[0]);
+            for (int p = 0; p < values.length; p++) {
+                appendOneDecimal(out, values[p]);
+                out.append(segments[p + 1]);
+            }
+            return;
+        }
+        MessageTemplate header = headerByLevel[result.getRiskLevelIndex()];
+        out.append(header.literal(0)).append(result.getScore()).append(header.literal(1));
+
+        for (int p = 0; p < values.length; p++) {
+            MessageTemplate detail = detailByRange[p][result.getRangeIndex(p)];
+            out.append(detail.literal(0));
+            appendOneDecimal(out, values[p]);
+            out.append(detail.literal(1));
+        }
+
+        out.append(footerByLevel[result.getRiskLevelIndex()]);
+    }
+
+    /**
+     * Текст ответа для набора диапазонов результата, разрезанный в местах значений параметров:
+     * между значениями остаются только готовые куски, которые renderAssessment дописывает целиком.
+     */
+    String[] assessmentSegments(ScoringTable.Result result) {
+        int count = detailByRange.length;
+        String[] segments = new String[count + 1];
+        MessageTemplate header = headerByLevel[result.getRiskLevelIndex()];
+        StringBuilder segment = new StringBuilder(512)
+                .append(header.literal(0)).append(result.getScore()).append(header.literal(1));
+        for (int p = 0; p < count; p++) {
+            MessageTemplate detail = detailByRange[p][result.getRangeIndex(p)];
+            segments[p] = segment.append(detail.literal(0)).toString();
+            segment.setLength(0);
+            segment.append(detail.literal(1));
+        }
+        segments[count] = segment.append(footerByLevel[result.getRiskLevelIndex()]).toString();
+        return segments;
+    }
+
+    /**
+     * Дописывает ответ на /stats: итог, распределение по уровням риска, тренд по дням
+     * (от раннего к сегодняшнему) и средний балл по диапазонам параметров.
+     */
+    public void renderStats(StringBuilder out, AssessmentStats.Summary summary) {
+        AssessmentStats.Counters total = summary.getTotal();
+        if (total.getCount() == 0) {
+            out.append(statsEmpty);
+            if (!summary.isComplete()) {
+                out.append(statsIncomplete);
+            }
+            return;
+        }
+        appendStats(out, statsHeader, total.getCount(), total.getMeanScore());
+
+        for (int l = 0; l < statsLevel.length; l++) {
+            appendStats(out, statsLevel[l], total.getLevelCount(l), 100.0 * total.getLevelCount(l) / total.getCount());
+        }
+
+        out.append(statsTrendHeader.literal(0)).append(summary.getDayCount()).append(statsTrendHeader.literal(1));
+        for (int d = summary.getDayCount() - 1; d >= 0; d--) {
+            AssessmentStats.Counters day = summary.getDay(d);
+            out.append(statsDay.literal(0)).append(DAY_FORMAT.format(summary.getDate(d))).append(statsDay.literal(1));
+            appendStats(out, statsDay, 2, day.getCount(), day.getMeanScore());
+        }
+
+        out.append(statsBandsHeader);
+        for (int p = 0; p < statsBand.length; p++) {
+            for (int r = 0; r < statsBand[p].length; r++) {
+                long count = total.getBandCount(p, r);
+                if (count > 0) {
+                    appendStats(out, statsBand[p][r], count, total.getBandMeanScore(p, r));
+                }
+            }
+        }
+
+        if (!summary.isComplete()) {
+            out.append(statsIncomplete);
+        }
+    }
+
+    // Шаблон с подстановками {целое} и {число с одним знаком}
+    private static void appendStats(StringBuilder out, MessageTemplate template, long count, double value) {
+        out.append(template.literal(0));
+        appendStats(out, template, 1, count, value);
+    }
+
+    // Дописывает целое, literal(next), число с одним знаком, literal(next + 1)
+    private static void appendStats(StringBuilder out, MessageTemplate template, int next, long count, double value) {
+        out.append(count).append(template.literal(next));
+        appendOneDecimal(out, value);
+        out.append(template.literal(next + 1));
+    }
+
+    /**
+     * То же, что String.format("%.1f", value), без разбора формата и создания Formatter.
+     * Быстрый путь — для неотрицательных значений, точно представимых не более чем тремя знаками
+     * после запятой (так вводятся все параметры); остальное отдаётся String.format.
+     */
+    static void appendOneDecimal(StringBuilder out, double value) {
+        // до 1e12 произведение value * 1000 меньше 2^53 и тысячные получаются точно
+        if (value >= 0 && value < 1e12 && SYMBOLS.getZeroDigit() == '0'
+                && !(value == 0 && 1 / value < 0)) {
+            long thousandths = Math.round(value * 1000);
+            if (thousandths / 1000.0 == value) {
+                // округление половины вверх, как в Formatter
+                long tenths = (thousandths + 50) / 100;
+                out.append(tenths / 10).append(SYMBOLS.getDecimalSeparator()).append((char) ('0' + tenths % 10));
+                return;
+            }
+        }
+        out.append(String.format(FORMAT_LOCALE, "%.1f", value));
+    }
+
+    private static MessageTemplate template(String name) {
+        String text = MESSAGES.get(name);
+        if (text == null) {
+            throw new IllegalStateException("Нет текста сообщения " + name);
+        }
+        return MessageTemplate.compile(text);
+    }
+
+    private static Map<String, String> loadMessages(String locale) {
+        String resource = "/messages_" + locale + ".json";
+        try (InputStream is = MessageTemplates.class.getResourceAsStream(resource)) {
+            if (is == null) {
+                throw new FileNotFoundException("Файл сообщений " + resource + " не найден");
+            }
+            return parseMessages(new String(is.readAllBytes(), StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new RuntimeException("Ошибка загрузки сообщений", e);
+        }
+    }
+
+    // Разбор объекта JSON, у которого все значения — строки
+    static Map<String, String> parseMessages(String json) {
+        Map<String, String> messages = new HashMap<>();
+        int[] pos = {skipSpace(json, 0)};
+        expect(json, pos, '{');
+        if (peek(json, pos) == '}') {
+            pos[0]++;
+        } else {
+            while (true) {
+                String name = readString(json, pos);
+                expect(json, pos, ':');
+                messages.put(name, readString(json, pos));
+                char next = peek(json, pos);
+                pos[0]++;
+                if (next == '}') {
+                    break;
+                }
+                if (next != ',') {
+                    throw syntaxError(json, pos[0] - 1, "ожидалась ',' или '}'");
+                }
+            }
+        }
+        if (skipSpace(json, pos[0]) != json.length()) {
+            throw syntaxError(json, pos[0], "лишние символы после объекта");
+        }
+        return messages;
+    }
+
+    private static String readString(String json, int[] pos) {
+        expect(json, pos, '"');
+        StringBuilder text = new StringBuilder();
+        int i = pos[0];
+        while (true) {
+            if (i >= json.length()) {
+                throw syntaxError(json, i, "незакрытая строка");
+            }
+            char c = json.charAt(i++);
+            if (c == '"') {
+                break;
+            }
+            if (c != '\\') {
+                text.append(c);
+                continue;
+            }
+            if (i >= json.length()) {
+                throw syntaxError(json, i, "незакрытая строка");
+            }
+            char escaped = json.charAt(i++);
+            switch (escaped) {
+                case 'n':
+                    text.append('\n');
+                    break;
+                case 't':
+                    text.append('\t');
+                    break;
+                case 'r':
+                    text.append('\r');
+                    break;
+                case 'b':
+                    text.append('\b');
+                    break;
+                case 'f':
+                    text.append('\f');
+                    break;
+                case 'u':
+                    if (i + 4 > json.length()) {
+                        throw syntaxError(json, i, "неполная последовательность \\u");
+                    }
+                    try {
+                        text.append((char) Integer.parseInt(json.substring(i, i + 4), 16));
+                    } catch (NumberFormatException e) {
+                        throw syntaxError(json, i, "неверная последовательность \\u");
+                    }
+                    i += 4;
+                    break;
+                case '"':
+                case '\\':
+                case '/':
+                    text.append(escaped);
+                    break;
+                default:
+                    throw syntaxError(json, i - 1, "неизвестная escape-последовательность");
+            }
+        }
+        pos[0] = i;
+        return text.toString();
+    }
+
+    private static void expect(String json, int[] pos, char expected) {
+        if (peek(json, pos) != expected) {
+            throw syntaxError(json, pos[0], "ожидался символ '" + expected + "'");
+        }
+        pos[0]++;
+    }
+
+    // Следующий значащий символ; пробелы пропускаются, позиция встаёт на него
+    private static char peek(String json, int[] pos) {
+        pos[0] = skipSpace(json, pos[0]);
+        return pos[0] < json.length() ? json.charAt(pos[0]) : 0;
+    }
+
+    private static int skipSpace(String json, int i) {
+        while (i < json.length() && Character.isWhitespace(json.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static IllegalStateException syntaxError(String json, int position, String message) {
+        return new IllegalStateException("Ошибка в файле сообщений, позиция " + position + ": " + message);
+    }
+}
@@ -0,0 +1,67 @@
+package org.example;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Локальная точка сбора метрик для Prometheus: GET http://127.0.0.1:PORT/metrics.
+ * Слушает только loopback; запросы редкие, поэтому обслуживаются одним потоком сервера.
+ */
+public class MetricsServer implements AutoCloseable {
+    private final HttpServer server;
+    private final List<BotMetrics> sources;
+
+    public MetricsServer(int port, List<BotMetrics> sources) throws IOException {
+        this.sources = sources;
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        this.server.createContext("/metrics", this::handle);
+    }
+
+    /**
+     * Запускает сервер на METRICS_PORT (по умолчанию 9404); none — без точки сбора.
+     */
+    public static MetricsServer startFromEnv(List<BotMetrics> sources) {
+        String port = System.getenv().getOrDefault("METRICS_PORT", "9404");
+        if ("none".equalsIgnoreCase(port)) {
+            return null;
+        }
+        try {
+            MetricsServer server = new MetricsServer(Integer.parseInt(port), sources);
+            server.server.start();
+            return server;
+        } catch (IOException e) {
+            System.err.println("Не удалось открыть порт метрик " + port + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            exchange.getRequestBody().transferTo(OutputStream.nullOutputStream());
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            StringBuilder text = new StringBuilder(16 * 1024);
+            for (BotMetrics metrics : sources) {
+                metrics.writePrometheus(text);
+            }
+            byte[] body = text.toString().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+}
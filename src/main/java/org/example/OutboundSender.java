@@ -0,0 +1,406 @@
+package org.example;
+
+import org.telegram.telegrambots.meta.api.methods.PartialBotApiMethod;
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Очередь исходящих сообщений.
+ * Обработчик обновлений только ставит сообщение в очередь, отправка идёт асинхронно (executeAsync).
+ * Соблюдаются лимиты Telegram: ведро токенов на каждый чат и общее на бота.
+ * Подряд идущие тексты в один чат склеиваются в одно сообщение, ответ 429 откладывает чат на retry_after.
+ * В каждый чат одновременно отправляется не больше одного запроса, поэтому порядок сообщений сохраняется.
+ */
+public class OutboundSender implements AutoCloseable {
+    // Лимиты Telegram: около 1 сообщения в секунду в чат и 30 в секунду на бота
+    public static final double CHAT_RATE = 1.0;
+    public static final double GLOBAL_RATE = 30.0;
+    private static final int CHAT_BURST = 3;
+    private static final int GLOBAL_BURST = 30;
+
+    private static final int MAX_TEXT_LENGTH = 4096;
+    private static final String TEXT_SEPARATOR = "\n\n";
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long SWEEP_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * Способ отправить запрос к Bot API; в боте — executeAsync.
+     */
+    public interface Transport {
+        CompletableFuture<?> send(PartialBotApiMethod<?> method);
+    }
+
+    private final Transport transport;
+    private final ConcurrentHashMap<Long, Outbox> outboxes = new ConcurrentHashMap<>();
+    private final DelayQueue<Outbox> ready = new DelayQueue<>();
+    // Ведра чатов живут дольше ящиков: ящик снимается, как только очередь чата пуста,
+    // а ведро — только когда снова наполнилось, иначе чат с быстрыми ответами не ограничивался бы вовсе
+    private final HashMap<Long, TokenBucket> chatBuckets = new HashMap<>();
+    private final double chatRate;
+    private long sweptAt = System.nanoTime();
+    private final TokenBucket global;
+    private final Thread worker;
+    private volatile boolean running = true;
+
+    private final AtomicInteger pending = new AtomicInteger();
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder rateLimited = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LatencyHistogram sendLatency = new LatencyHistogram();
+
+    public OutboundSender(Transport transport) {
+        this(transport, CHAT_RATE, GLOBAL_RATE);
+    }
+
+    /**
+     * Лимиты в сообщениях в секунду; Double.POSITIVE_INFINITY отключает ограничение.
+     */
+    public OutboundSender(Transport transport, double chatRate, double globalRate) {
+        this.transport = transport;
+        this.chatRate = chatRate;
+        this.global = new TokenBucket(globalRate, GLOBAL_BURST);
+        this.worker = new Thread(this::run, "outbound-sender");
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    public void sendText(long chatId, String text) {
+        enqueue(chatId, new Outgoing(text, null, null));
+    }
+
+    /**
+     * Ставит в очередь произвольный запрос; onDone вызывается после отправки или окончательной ошибки.
+     */
+    public void send(long chatId, PartialBotApiMethod<?> method, Runnable onDone) {
+        enqueue(chatId, new Outgoing(null, method, onDone));
+    }
+
+    private void enqueue(long chatId, Outgoing item) {
+        pending.incrementAndGet();
+        while (true) {
+            Outbox box = outboxes.computeIfAbsent(chatId, Outbox::new);
+            synchronized (box) {
+                if (box.closed) {
+                    continue; // ящик только что сняли — берём новый
+                }
+                box.items.add(item);
+                if (!box.inFlight && !box.queued) {
+                    schedule(box, System.nanoTime());
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Ждёт, пока очередь опустеет, но не дольше timeout. Возвращает true, если всё отправлено.
+     */
+    public boolean flush(long timeout, TimeUnit unit) {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (pending.get() > 0) {
+            if (System.nanoTime() - deadline >= 0) {
+                return false;
+            }
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void close() {
+        close(10, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Отправляет очередь, но не дольше timeout, и останавливает поток отправки.
+     * Возвращает true, если всё отправлено.
+     */
+    public boolean close(long timeout, TimeUnit unit) {
+        boolean flushed = flush(timeout, unit);
+        running = false;
+        worker.interrupt();
+        return flushed;
+    }
+
+    // Метрики
+
+    public int getPendingCount() {
+        return pending.get();
+    }
+
+    public long getSentCount() {
+        return sent.sum();
+    }
+
+    public long getCoalescedCount() {
+        return coalesced.sum();
+    }
+
+    public long getRateLimitedCount() {
+        return rateLimited.sum();
+    }
+
+    public long getFailedCount() {
+        return failed.sum();
+    }
+
+    /**
+     * Время запроса к Bot API от отправки до ответа.
+     */
+    public LatencyHistogram getSendLatency() {
+        return sendLatency;
+    }
+
+    private void schedule(Outbox box, long readyAt) {
+        box.queued = true;
+        box.readyAt = readyAt;
+        ready.add(box);
+    }
+
+    private void run() {
+        while (running) {
+            Outbox box;
+            try {
+                box = ready.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+
+            // Ведра меняет только этот поток, поэтому они без синхронизации
+            long now = System.nanoTime();
+            sweepBuckets(now);
+            TokenBucket bucket = chatBuckets.computeIfAbsent(box.chatId, id -> new TokenBucket(chatRate, CHAT_BURST));
+            long wait = Math.max(bucket.nanosUntilToken(now), global.nanosUntilToken(now));
+            if (wait > 0) {
+                synchronized (box) {
+                    schedule(box, now + wait);
+                }
+                continue;
+            }
+            bucket.take();
+            global.take();
+
+            Outgoing item;
+            synchronized (box) {
+                box.queued = false;
+                item = takeNext(box);
+                if (item == null) {
+                    continue;
+                }
+                box.inFlight = true;
+            }
+            transmit(box, item);
+        }
+    }
+
+    // Раз в SWEEP_INTERVAL убирает наполнившиеся ведра: новое ведро чата начинается полным, то есть с тем же состоянием
+    private void sweepBuckets(long now) {
+        if (now - sweptAt < SWEEP_INTERVAL_NANOS) {
+            return;
+        }
+        sweptAt = now;
+        chatBuckets.values().removeIf(bucket -> bucket.isFull(now));
+    }
+
+    // Снимает из ящика следующий запрос, склеивая подряд идущие тексты
+    private Outgoing takeNext(Outbox box) {
+        Outgoing first = box.items.poll();
+        if (first == null || first.text == null) {
+            return first;
+        }
+        Outgoing next = box.items.peek();
+        if (next == null || next.text == null) {
+            return first;
+        }
+
+        StringBuilder text = new StringBuilder(first.text);
+        int parts = 1;
+        while (next != null && next.text != null
+                && text.length() + TEXT_SEPARATOR.length() + next.text.length() <= MAX_TEXT_LENGTH) {
+            text.append(TEXT_SEPARATOR).append(next.text);
+            box.items.poll();
+            next = box.items.peek();
+            parts++;
+        }
+        if (parts == 1) {
+            return first;
+        }
+        coalesced.add(parts - 1);
+        pending.addAndGet(-(parts - 1));
+        return new Outgoing(text.toString(), null, null);
+    }
+
+    private void transmit(Outbox box, Outgoing item) {
+        PartialBotApiMethod<?> method = item.method;
+        if (method == null) {
+            SendMessage message = new SendMessage();
+            message.setChatId(Long.toString(box.chatId));
+            message.setText(item.text);
+            method = message;
+        }
+
+        item.sentAt = System.nanoTime();
+        CompletableFuture<?> future;
+        try {
+            future = transport.send(method);
+        } catch (RuntimeException e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+        future.whenComplete((result, error) -> onComplete(box, item, error));
+    }
+
+    private void onComplete(Outbox box, Outgoing item, Throwable error) {
+        long now = System.nanoTime();
+        sendLatency.record(now - item.sentAt);
+        if (error instanceof CompletionException && error.getCause() != null) {
+            error = error.getCause();
+        }
+
+        synchronized (box) {
+            box.inFlight = false;
+            if (error == null) {
+                sent.increment();
+                finish(item);
+            } else if (retryAfterSeconds(error) > 0) {
+                // 429: возвращаем сообщение в начало очереди и ждём, сколько сказал Telegram
+                rateLimited.increment();
+                box.items.addFirst(item);
+                schedule(box, now + TimeUnit.SECONDS.toNanos(retryAfterSeconds(error)));
+                return;
+            } else if (++item.attempts < MAX_ATTEMPTS && !isClientError(error)) {
+                box.items.addFirst(item);
+                schedule(box, now + TimeUnit.SECONDS.toNanos(item.attempts));
+                return;
+            } else {
+                failed.increment();
+                System.err.println("Не удалось отправить сообщение в чат " + box.chatId + ": " + error.getMessage());
+                finish(item);
+            }
+
+            if (!box.items.isEmpty()) {
+                schedule(box, now);
+            } else {
+                box.closed = true;
+                outboxes.remove(box.chatId, box);
+            }
+        }
+    }
+
+    private void finish(Outgoing item) {
+        pending.decrementAndGet();
+        if (item.onDone != null) {
+            try {
+                item.onDone.run();
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private static int retryAfterSeconds(Throwable error) {
+        if (error instanceof TelegramApiRequestException) {
+            TelegramApiRequestException request = (TelegramApiRequestException) error;
+            if (request.getParameters() != null && request.getParameters().getRetryAfter() != null) {
+                return request.getParameters().getRetryAfter();
+            }
+            if (request.getErrorCode() != null && request.getErrorCode() == 429) {
+                return 1;
+            }
+        }
+        return 0;
+    }
+
+    // 4xx (кроме 429) повторять бесполезно: чат удалён, бот заблокирован, неверный запрос
+    private static boolean isClientError(Throwable error) {
+        if (error instanceof TelegramApiRequestException) {
+            Integer code = ((TelegramApiRequestException) error).getErrorCode();
+            return code != null && code >= 400 && code < 500;
+        }
+        return false;
+    }
+
+    private static final class Outgoing {
+        private final String text;
+        private final PartialBotApiMethod<?> method;
+        private final Runnable onDone;
+        private int attempts;
+        private long sentAt;
+
+        Outgoing(String text, PartialBotApiMethod<?> method, Runnable onDone) {
+            this.text = text;
+            this.method = method;
+            this.onDone = onDone;
+        }
+    }
+
+    private static final class Outbox implements Delayed {
+        private final long chatId;
+        private final ArrayDeque<Outgoing> items = new ArrayDeque<>();
+        private boolean inFlight;
+        private boolean queued;
+        private boolean closed;
+        private volatile long readyAt;
+
+        Outbox(long chatId) {
+            this.chatId = chatId;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(readyAt - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(readyAt, ((Outbox) other).readyAt);
+        }
+    }
+
+    private static final class TokenBucket {
+        private final double tokensPerNano;
+        private final double capacity;
+        private double tokens;
+        private long updated = System.nanoTime();
+
+        TokenBucket(double perSecond, int capacity) {
+            this.tokensPerNano = perSecond / TimeUnit.SECONDS.toNanos(1);
+            this.capacity = capacity;
+            this.tokens = capacity;
+        }
+
+        long nanosUntilToken(long now) {
+            if (Double.isInfinite(tokensPerNano)) {
+                return 0;
+            }
+            tokens = Math.min(capacity, tokens + (now - updated) * tokensPerNano);
+            updated = now;
+            return tokens >= 1 ? 0 : (long) ((1 - tokens) / tokensPerNano) + 1;
+        }
+
+        boolean isFull(long now) {
+            nanosUntilToken(now);
+            return Double.isInfinite(tokensPerNano) || tokens >= capacity;
+        }
+
+        void take() {
+            tokens -= 1;
+        }
+    }
+}
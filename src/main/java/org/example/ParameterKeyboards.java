@@ -0,0 +1,129 @@
+package org.example;
+
+import org.telegram.telegrambots.meta.api.objects.replykeyboard.InlineKeyboardMarkup;
+import org.telegram.telegrambots.meta.api.objects.replykeyboard.buttons.InlineKeyboardButton;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Кнопки для параметров с несколькими возможными значениями, скомпилированные для одного снимка конфигурации.
+ * Флаги (0/1) получают по кнопке на диапазон с его комментарием, небольшие целочисленные шкалы (Апгар) —
+ * по кнопке на каждое целое значение из диапазонов. Остальные параметры вводятся текстом.
+ * Данные кнопки — пять символов: префикс, номер параметра, номер кнопки и две цифры поколения
+ * конфигурации, каждая — символ '0' + число; разбираются вычитанием, без разбора строк.
+ * Поколение отсекает кнопки, оставшиеся от прежней конфигурации.
+ */
+final class ParameterKeyboards {
+    static final char PREFIX = 'k';
+    private static final int DATA_LENGTH = 5;
+    private static final char DIGIT_BASE = '0';
+    private static final int DIGITS = 64; // '0'..'o' — допустимые символы в callback_data
+    private static final int MAX_INTEGER_BUTTONS = 12;
+    private static final int BUTTONS_PER_ROW = 6;
+
+    private final InlineKeyboardMarkup[] markups; // null — параметр вводится текстом
+    private final double[][] values;              // [параметр][кнопка]
+    private final String[][] labels;
+    private final int generation;
+
+    ParameterKeyboards(ParameterSchema schema, ScoringTable table, long version) {
+        this.generation = (int) Math.floorMod(version, (long) DIGITS * DIGITS);
+        this.markups = new InlineKeyboardMarkup[schema.size()];
+        this.values = new double[schema.size()][];
+        this.labels = new String[schema.size()][];
+
+        for (int p = 0; p < schema.size() && p < DIGITS; p++) {
+            ParameterSchema.Parameter parameter = schema.get(p);
+            List<RiskDataStorage.Range> ranges = parameter.getConfig().getRanges();
+            List<Double> choices = new ArrayList<>();
+            List<String> names = new ArrayList<>();
+            if (parameter.getType() == ParameterSchema.ValueType.FLAG) {
+                for (RiskDataStorage.Range range : ranges) {
+                    choices.add(range.getMin());
+                    names.add(range.getComment());
+                }
+            } else if (parameter.getType() == ParameterSchema.ValueType.INTEGER) {
+                double min = Double.POSITIVE_INFINITY;
+                double max = Double.NEGATIVE_INFINITY;
+                for (RiskDataStorage.Range range : ranges) {
+                    min = Math.min(min, Math.ceil(range.getMin()));
+                    max = Math.max(max, Math.floor(range.getMax()));
+                }
+                if (max - min + 1 > MAX_INTEGER_BUTTONS) {
+                    continue;
+                }
+                for (double v = min; v <= max; v++) {
+                    if (table.findRange(p, v) >= 0) {
+                        choices.add(v);
+                        names.add(Long.toString((long) v));
+                    }
+                }
+            }
+            if (choices.size() < 2 || choices.size() > DIGITS) {
+                continue;
+            }
+
+            values[p] = new double[choices.size()];
+            labels[p] = names.toArray(new String[0]);
+            List<List<InlineKeyboardButton>> rows = new ArrayList<>();
+            // флаги — по кнопке в строке: на них длинные подписи
+            int perRow = parameter.getType() == ParameterSchema.ValueType.FLAG ? 1 : BUTTONS_PER_ROW;
+            for (int b = 0; b < choices.size(); b++) {
+                values[p][b] = choices.get(b);
+                if (b % perRow == 0) {
+                    rows.add(new ArrayList<>());
+                }
+                InlineKeyboardButton button = new InlineKeyboardButton();
+                button.setText(labels[p][b]);
+                button.setCallbackData(encode(p, b));
+                rows.get(rows.size() - 1).add(button);
+            }
+            markups[p] = new InlineKeyboardMarkup(rows);
+        }
+    }
+
+    /**
+     * Клавиатура параметра или null, если он вводится текстом.
+     */
+    InlineKeyboardMarkup get(int parameter) {
+        return markups[parameter];
+    }
+
+    /**
+     * Код кнопки (параметр << 8 | кнопка) или -1, если данные не от этого снимка конфигурации.
+     */
+    int decode(String data) {
+        if (data == null || data.length() != DATA_LENGTH || data.charAt(0) != PREFIX) {
+            return -1;
+        }
+        int parameter = data.charAt(1) - DIGIT_BASE;
+        int button = data.charAt(2) - DIGIT_BASE;
+        int dataGeneration = (data.charAt(3) - DIGIT_BASE) * DIGITS + (data.charAt(4) - DIGIT_BASE);
+        if (dataGeneration != generation || parameter < 0 || parameter >= values.length || values[parameter] == null
+                || button < 0 || button >= values[parameter].length) {
+            return -1;
+        }
+        return parameter << 8 | button;
+    }
+
+    static int parameterOf(int code) {
+        return code >>> 8;
+    }
+
+    double valueOf(int code) {
+        return values[code >>> 8][code & 0xFF];
+    }
+
+    String labelOf(int code) {
+        return labels[code >>> 8][code & 0xFF];
+    }
+
+    private String encode(int parameter, int button) {
+        return new String(new char[]{PREFIX,
+                (char) (DIGIT_BASE + parameter),
+                (char) (DIGIT_BASE + button),
+                (char) (DIGIT_BASE + generation / DIGITS),
+                (char) (DIGIT_BASE + generation % DIGITS)});
+    }
+}
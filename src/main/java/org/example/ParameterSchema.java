@@ -0,0 +1,151 @@
+package org.example;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Список параметров оценки в порядке ввода, собранный из risk_config.json.
+ * Для каждого параметра известны ключ в конфигурации, тип значения, подсказка и подпись в результате.
+ */
+public final class ParameterSchema {
+    public enum ValueType {
+        @JsonProperty("decimal") DECIMAL,
+        @JsonProperty("integer") INTEGER,
+        @JsonProperty("flag") FLAG;
+
+        /**
+         * Разбирает введённый текст; возвращает NaN, если формат не подходит.
+         * Неверный ввод — обычное дело, поэтому формат проверяется заранее, без исключений.
+         */
+        public double parse(String text) {
+            if (this == DECIMAL) {
+                return isDecimal(text) ? Double.parseDouble(text) : Double.NaN;
+            }
+            return parseInteger(text);
+        }
+
+        /**
+         * Целое число со знаком или NaN; в отличие от Integer.parseInt не бросает исключений.
+         */
+        public static double parseInteger(String text) {
+            int length = text.length();
+            int i = length > 0 && (text.charAt(0) == '-' || text.charAt(0) == '+') ? 1 : 0;
+            if (i == length) {
+                return Double.NaN;
+            }
+            long value = 0;
+            for (; i < length; i++) {
+                char c = text.charAt(i);
+                if (c < '0' || c > '9') {
+                    return Double.NaN;
+                }
+                value = value * 10 + (c - '0');
+                if (value > (long) Integer.MAX_VALUE + 1) {
+                    return Double.NaN;
+                }
+            }
+            if (text.charAt(0) == '-') {
+                value = -value;
+            }
+            return value > Integer.MAX_VALUE ? Double.NaN : value;
+        }
+
+        // [+-]цифры[.цифры][e[+-]цифры] — такую строку Double.parseDouble разберёт без исключения
+        private static boolean isDecimal(String text) {
+            int length = text.length();
+            int i = length > 0 && (text.charAt(0) == '-' || text.charAt(0) == '+') ? 1 : 0;
+            int digits = 0;
+            for (; i < length && text.charAt(i) >= '0' && text.charAt(i) <= '9'; i++) {
+                digits++;
+            }
+            if (i < length && text.charAt(i) == '.') {
+                for (i++; i < length && text.charAt(i) >= '0' && text.charAt(i) <= '9'; i++) {
+                    digits++;
+                }
+            }
+            if (digits == 0) {
+                return false;
+            }
+            if (i < length && (text.charAt(i) == 'e' || text.charAt(i) == 'E')) {
+                i++;
+                if (i < length && (text.charAt(i) == '-' || text.charAt(i) == '+')) {
+                    i++;
+                }
+                int exponentStart = i;
+                while (i < length && text.charAt(i) >= '0' && text.charAt(i) <= '9') {
+                    i++;
+                }
+                if (i == exponentStart) {
+                    return false;
+                }
+            }
+            return i == length;
+        }
+    }
+
+    private final Parameter[] parameters;
+
+    ParameterSchema(Map<String, RiskDataStorage.ParameterConfig> configs) {
+        List<Parameter> list = new ArrayList<>();
+        for (Map.Entry<String, RiskDataStorage.ParameterConfig> entry : configs.entrySet()) {
+            RiskDataStorage.ParameterConfig config = entry.getValue();
+            if (config.getType() == null || config.getPrompt() == null) {
+                throw new IllegalStateException("У параметра " + entry.getKey() + " не заданы type или prompt");
+            }
+            list.add(new Parameter(entry.getKey(), config));
+        }
+        list.sort(Comparator.comparingInt(p -> p.getConfig().getOrder()));
+
+        this.parameters = list.toArray(new Parameter[0]);
+        for (int i = 0; i < parameters.length; i++) {
+            parameters[i].index = i;
+        }
+    }
+
+    public int size() {
+        return parameters.length;
+    }
+
+    public Parameter get(int index) {
+        return parameters[index];
+    }
+
+    public static final class Parameter {
+        private final String key;
+        private final RiskDataStorage.ParameterConfig config;
+        private int index;
+
+        Parameter(String key, RiskDataStorage.ParameterConfig config) {
+            this.key = key;
+            this.config = config;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public ValueType getType() {
+            return config.getType();
+        }
+
+        public String getPrompt() {
+            return config.getPrompt();
+        }
+
+        public String getLabel() {
+            return config.getLabel();
+        }
+
+        public RiskDataStorage.ParameterConfig getConfig() {
+            return config;
+        }
+    }
+}
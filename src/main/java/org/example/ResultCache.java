@@ -0,0 +1,122 @@
+package org.example;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Кэш результатов по набору диапазонов (корзин) одного снимка конфигурации.
+ * Балл Хермансена, уровень риска и текст ответа без самих значений зависят только от того,
+ * в какой диапазон попал каждый параметр, а типичных сочетаний у транспортировок немного.
+ * Ключ — индексы диапазонов, упакованные в long (ScoringTable.evaluate), таблица — открытая адресация
+ * с линейным пробированием по массиву неизменяемых записей, без блокировок: запись публикуется
+ * через final-поля, а гонка двух вставок в одну ячейку лишь теряет одну из них.
+ * Размер ограничен: если в окне пробирования нет свободной ячейки, результат не сохраняется.
+ * Смена конфигурации создаёт новый снимок и с ним новый кэш, поэтому старые записи не переживают её.
+ */
+final class ResultCache {
+    private static final int CAPACITY = 2048; // степень двойки
+    private static final int MAX_PROBES = 8;
+
+    private final MessageTemplates templates;
+    private final Entry[] entries = new Entry[CAPACITY];
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Результат для набора диапазонов: балл, уровень риска и текст ответа, разрезанный
+     * в местах значений: segments[0] + значение 0 + segments[1] + ... + segments[n].
+     */
+    static final class Entry {
+        private final long key;
+        private final int score;
+        private final int riskLevel;
+        private final String[] segments;
+
+        Entry(long key, int score, int riskLevel, String[] segments) {
+            this.key = key;
+            this.score = score;
+            this.riskLevel = riskLevel;
+            this.segments = segments;
+        }
+
+        int getScore() {
+            return score;
+        }
+
+        int getRiskLevel() {
+            return riskLevel;
+        }
+
+        String[] getSegments() {
+            return segments;
+        }
+    }
+
+    ResultCache(MessageTemplates templates) {
+        this.templates = templates;
+    }
+
+    /**
+     * Запись для ключа или null.
+     */
+    Entry get(long key) {
+        int slot = mix(key);
+        for (int probe = 0; probe < MAX_PROBES; probe++, slot = (slot + 1) & (CAPACITY - 1)) {
+            Entry entry = entries[slot];
+            if (entry == null) {
+                break;
+            }
+            if (entry.key == key) {
+                hits.increment();
+                return entry;
+            }
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * Запись для только что посчитанного результата; сохраняется, если есть место.
+     */
+    Entry put(long key, ScoringTable.Result result) {
+        Entry created = new Entry(key, result.getScore(), result.getRiskLevelIndex(),
+                templates.assessmentSegments(result));
+        int slot = mix(key);
+        for (int probe = 0; probe < MAX_PROBES; probe++, slot = (slot + 1) & (CAPACITY - 1)) {
+            Entry entry = entries[slot];
+            if (entry == null) {
+                entries[slot] = created;
+                break;
+            }
+            if (entry.key == key) {
+                return entry; // параллельная вставка того же набора успела раньше
+            }
+        }
+        return created;
+    }
+
+    // Метрики
+
+    long getHits() {
+        return hits.sum();
+    }
+
+    long getMisses() {
+        return misses.sum();
+    }
+
+    // Просмотр всей таблицы — только для метрик
+    long getSize() {
+        long size = 0;
+        for (Entry entry : entries) {
+            if (entry != null) {
+                size++;
+            }
+        }
+        return size;
+    }
+
+    private static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h >>> 40) & (CAPACITY - 1);
+    }
+}
@@ -1,49 +1,391 @@
 package org.example;
 
-import io.github.cdimascio.dotenv.Dotenv;
+import org.telegram.telegrambots.bots.DefaultBotOptions;
 import org.telegram.telegrambots.bots.TelegramLongPollingBot;
+import org.telegram.telegrambots.meta.api.methods.AnswerCallbackQuery;
+import org.telegram.telegrambots.meta.api.methods.BotApiMethod;
+import org.telegram.telegrambots.meta.api.methods.GetFile;
+import org.telegram.telegrambots.meta.api.methods.PartialBotApiMethod;
+import org.telegram.telegrambots.meta.api.methods.send.SendDocument;
 import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.api.methods.updatingmessages.EditMessageText;
+import org.telegram.telegrambots.meta.api.objects.CallbackQuery;
+import org.telegram.telegrambots.meta.api.objects.Document;
+import org.telegram.telegrambots.meta.api.objects.InputFile;
 import org.telegram.telegrambots.meta.api.objects.Message;
 import org.telegram.telegrambots.meta.api.objects.Update;
+import org.telegram.telegrambots.meta.api.objects.replykeyboard.InlineKeyboardMarkup;
 import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Serializable;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.text.DecimalFormat;
-import java.util.*;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class RiskBot extends TelegramLongPollingBot {
-    private final RiskDataStorage storage;
+    private static final Duration SESSION_TIMEOUT = Duration.ofHours(2);
+    private static final int STATS_DEFAULT_DAYS = 7;
+    private static final int STATS_MAX_DAYS = 31; // ответ должен уместиться в одно сообщение
+
+    private final Tenant tenant;
+    private final RiskConfigHolder config;
     private final DecimalFormat df = new DecimalFormat("0.00%");
-    private final Map<String, UserState> userStates = new HashMap<>();
+    private final SessionStore<UserState> userStates;
+    private final UpdateDispatcher dispatcher;
+    private final AdmissionControl admission;
+    private final OutboundSender outbound;
+    private final SessionJournal journal;
+    private final AuditLog audit;
+    private final AssessmentStats stats = new AssessmentStats(ZoneId.systemDefault());
+    private final BotMetrics metrics;
+    private final AtomicBoolean closed = new AtomicBoolean();
 
     public RiskBot() {
-        this.storage = new RiskDataStorage();
+        this(Tenant.defaultTenant(), null);
+    }
+
+    /**
+     * Бот одного арендатора; updateExecutor — общий пул обработки обновлений для всех ботов процесса.
+     */
+    public RiskBot(Tenant tenant, ExecutorService updateExecutor) {
+        this(tenant, updateExecutor, OutboundSender.CHAT_RATE, OutboundSender.GLOBAL_RATE, new AdmissionControl());
+    }
+
+    // Для бенчмарков, обучающего прогона и тестового сервера Bot API: лимиты отправки задаются явно,
+    // tenant — Tenant.offline(...), чтобы прогоны не писали в рабочие журналы
+    RiskBot(Tenant tenant, double chatRate, double globalRate) {
+        this(tenant, chatRate, globalRate, new AdmissionControl());
+    }
+
+    RiskBot(Tenant tenant, double chatRate, double globalRate, AdmissionControl admission) {
+        this(tenant, null, chatRate, globalRate, admission);
+    }
+
+    // this уходит в диспетчер, отправитель и хранилище сессий только как ссылки на private-методы;
+    // вызываются они после старта опроса или вебхука, когда конструктор уже завершён
+    @SuppressWarnings("this-escape")
+    private RiskBot(Tenant tenant, ExecutorService updateExecutor, double chatRate, double globalRate,
+                    AdmissionControl admission) {
+        super(createOptions());
+        this.tenant = tenant;
+        this.metrics = new BotMetrics(tenant.getMetricsPrefix());
+        this.admission = admission;
+        // очередь диспетчера ограничена тем же числом, что и допуск: отказ OVERLOAD наступает раньше блокировки submit
+        this.dispatcher = new UpdateDispatcher(this::handleAdmitted, admission.getMaxInFlight(), updateExecutor);
+        this.outbound = new OutboundSender(this::transmit, chatRate, globalRate);
+        // одинаковые файлы конфигурации у разных ботов компилируются один раз
+        this.config = new RiskConfigHolder(tenant.getRiskConfigPath());
+        this.journal = openJournal(tenant);
+        this.audit = openAudit(tenant);
+        if (audit != null) {
+            loadStatsHistory();
+        }
+        this.userStates = new SessionStore<>(10_000, SESSION_TIMEOUT, UserState::new,
+                journal == null ? null : this::restoreSession);
+        try {
+            config.start();
+        } catch (IOException e) {
+            System.err.println("Не удалось включить отслеживание конфигурации: " + e.getMessage());
+        }
+        registerMetrics();
+    }
+
+    private void registerMetrics() {
+        metrics.registerHistogram("queue", dispatcher.getLagHistogram());
+        metrics.registerHistogram("send", outbound.getSendLatency());
+        metrics.registerGauge("dispatcher_queue_depth", "Обновления в очередях диспетчера", dispatcher::getQueueDepth);
+        metrics.registerGauge("dispatcher_active_chats", "Чаты с необработанными обновлениями", dispatcher::getActiveChats);
+        metrics.registerDurationGauge("dispatcher_oldest_wait_seconds", "Ожидание самого старого необработанного обновления",
+                dispatcher::getOldestWaitNanos);
+        metrics.registerGauge("updates_processed_total", "Обработанные обновления", dispatcher::getProcessedCount);
+        metrics.registerGauge("admission_in_flight", "Допущенные обновления в обработке", admission::getInFlight);
+        metrics.registerGauge("admission_duplicates_total", "Повторные update_id",
+                () -> admission.getCount(AdmissionControl.Verdict.DUPLICATE));
+        metrics.registerGauge("admission_chat_limited_total", "Отказы чатам сверх лимита окна",
+                () -> admission.getCount(AdmissionControl.Verdict.CHAT_LIMIT)
+                        + admission.getCount(AdmissionControl.Verdict.CHAT_LIMIT_REPEATED));
+        metrics.registerGauge("admission_overload_total", "Отказы при превышении общего лимита обработки",
+                () -> admission.getCount(AdmissionControl.Verdict.OVERLOAD));
+        metrics.registerGauge("outbound_pending", "Сообщения в исходящей очереди", outbound::getPendingCount);
+        metrics.registerGauge("outbound_sent_total", "Отправленные запросы", outbound::getSentCount);
+        metrics.registerGauge("outbound_coalesced_total", "Сообщения, склеенные с соседними", outbound::getCoalescedCount);
+        metrics.registerGauge("outbound_rate_limited_total", "Ответы 429 от Telegram", outbound::getRateLimitedCount);
+        metrics.registerGauge("outbound_failed_total", "Сообщения, которые не удалось отправить", outbound::getFailedCount);
+        metrics.registerGauge("sessions", "Сессии в памяти", userStates::size);
+        metrics.registerGauge("session_idle_evictions_total", "Сессии, вытесненные по таймауту", userStates::getIdleEvictions);
+        metrics.registerGauge("session_size_evictions_total", "Сессии, вытесненные при переполнении", userStates::getSizeEvictions);
+        metrics.registerGauge("config_reloads_total", "Применённые перезагрузки конфигурации", config::getReloadCount);
+        metrics.registerGauge("config_reload_failures_total", "Отклонённые перезагрузки конфигурации", config::getFailureCount);
+        metrics.registerDurationGauge("config_reload_seconds", "Длительность последней перезагрузки конфигурации",
+                config::getLastReloadNanos);
+        metrics.registerGauge("config_last_reload_ok", "1, если последняя перезагрузка конфигурации применена",
+                () -> config.getLastError() == null ? 1 : 0);
+        // счётчики кэша текущего снимка; при перезагрузке конфигурации начинаются заново
+        metrics.registerGauge("result_cache_hits_total", "Оценки, взятые из кэша результатов",
+                () -> config.current().getResultCache().getHits());
+        metrics.registerGauge("result_cache_misses_total", "Оценки, посчитанные заново",
+                () -> config.current().getResultCache().getMisses());
+        metrics.registerGauge("result_cache_entries", "Наборы диапазонов в кэше результатов",
+                () -> config.current().getResultCache().getSize());
+        metrics.registerGauge("startup_ready_millis", "Время от main до начала приёма обновлений", StartupTimer::getReadyMillis);
+        metrics.registerGauge("startup_first_update_millis", "Время от main до первого обновления", StartupTimer::getFirstUpdateMillis);
+        if (journal != null) {
+            metrics.registerGauge("journal_written_total", "Записи журнала сессий", journal::getWrittenCount);
+            metrics.registerGauge("journal_restored_total", "Сессии, восстановленные из журнала", journal::getRestoredCount);
+            metrics.registerGauge("journal_bytes", "Размер журнала сессий", journal::getFileSize);
+        }
+        if (audit != null) {
+            metrics.registerGauge("audit_records_total", "Оценки, записанные в журнал аудита", audit::getCommittedCount);
+            metrics.registerGauge("audit_bytes", "Размер журнала аудита", audit::getFileSize);
+            metrics.registerGauge("audit_write_failures_total", "Неудачные попытки записи журнала аудита", audit::getFailureCount);
+            metrics.registerGauge("audit_failing", "1, если последняя запись журнала аудита не удалась",
+                    () -> audit.isFailing() ? 1 : 0);
+            metrics.registerGauge("audit_backlog_records", "Оценки, ещё не записанные в журнал аудита", audit::getBacklogCount);
+        }
+    }
+
+    // SESSION_JOURNAL — файл журнала сессий единственного бота (по умолчанию sessions.journal),
+    // у нескольких ботов — sessions-<id>.journal; none — без сохранения на диск. Файл, заданный у бота, важнее
+    private static SessionJournal openJournal(Tenant tenant) {
+        String file = tenant.getSessionJournal();
+        if (file == null) {
+            file = System.getenv("SESSION_JOURNAL");
+            if (file == null || file.isBlank() || !tenant.isDefault() && !Tenant.NONE.equalsIgnoreCase(file)) {
+                file = tenant.getJournalFile();
+            }
+        }
+        if (Tenant.NONE.equalsIgnoreCase(file)) {
+            return null;
+        }
+        try {
+            return new SessionJournal(Path.of(file), SESSION_TIMEOUT);
+        } catch (IOException e) {
+            System.err.println("Журнал сессий недоступен, сессии хранятся только в памяти: " + e.getMessage());
+            return null;
+        }
+    }
+
+    // AUDIT_LOG — журнал завершённых оценок единственного бота (по умолчанию audit.log),
+    // у нескольких ботов — audit-<id>.log; none — без журнала. Файл, заданный у бота, важнее
+    private static AuditLog openAudit(Tenant tenant) {
+        String file = tenant.getAuditLog();
+        if (file == null) {
+            file = System.getenv("AUDIT_LOG");
+            if (file == null || file.isBlank() || !tenant.isDefault() && !Tenant.NONE.equalsIgnoreCase(file)) {
+                file = tenant.getAuditFile();
+            }
+        }
+        if (Tenant.NONE.equalsIgnoreCase(file)) {
+            return null;
+        }
+        try {
+            return new AuditLog(Path.of(file));
+        } catch (IOException e) {
+            System.err.println("Журнал оценок недоступен, оценки не сохраняются: " + e.getMessage());
+            return null;
+        }
+    }
+
+    // Счётчики /stats по оценкам до запуска поднимаются из журнала в фоне, бот отвечает сразу
+    private void loadStatsHistory() {
+        Thread loader = new Thread(() -> {
+            try {
+                stats.loadHistory(audit.getPath(), audit.getInitialRecords());
+            } catch (IOException e) {
+                System.err.println("Не удалось загрузить историю оценок: " + e.getMessage());
+            }
+        }, "stats-history");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    // BOT_API_URL позволяет направить бота на локальный сервер вместо api.telegram.org,
+    // например http://localhost:8081/bot; свойство bot.api.url — то же для запуска в одном процессе с сервером
+    private static DefaultBotOptions createOptions() {
+        DefaultBotOptions options = new DefaultBotOptions();
+        String baseUrl = System.getProperty("bot.api.url", System.getenv("BOT_API_URL"));
+        if (baseUrl != null && !baseUrl.isBlank()) {
+            options.setBaseUrl(baseUrl);
+        }
+        // потоки для executeAsync; исходящая очередь держит не больше одного запроса на чат
+        options.setMaxThreads(8);
+        return options;
     }
 
     @Override
     public String getBotUsername() {
-        return "NeoRisk2_bot";
+        return tenant.getUsername();
     }
 
     @Override
     public String getBotToken() {
-        Dotenv dotenv = Dotenv.configure()
-                .filename("token.env")
-                .load();
-        return dotenv.get("BOT_TOKEN");
+        return tenant.getToken();
     }
 
+    /**
+     * Для источников без повторной доставки: обновление, не принятое из-за перегрузки, не пропадает молча —
+     * пользователь получает просьбу отправить сообщение ещё раз.
+     */
     @Override
     public void onUpdateReceived(Update update) {
-        if (!update.hasMessage() || !update.getMessage().hasText()) {
+        if (!offer(update) && !closed.get()) {
+            long chatId = UpdateDispatcher.chatIdOf(update);
+            if (chatId != 0) {
+                sendResponse(chatId, config.current().getTemplates().busy());
+            }
+        }
+    }
+
+    /**
+     * Передаёт обновление в обработку. false — обновление не принято (перегрузка или остановка бота)
+     * и должно быть доставлено снова: UpdatePoller не сдвигает смещение, WebhookServer отвечает 503.
+     * Повторы, отказы по лимиту чата и сам допуск считаются принятыми.
+     */
+    public boolean offer(Update update) {
+        StartupTimer.updateReceived();
+        long chatId = UpdateDispatcher.chatIdOf(update);
+        // отказ — до разбора и до очереди; флуд одного чата не задерживает остальные
+        switch (admission.admit(update, chatId)) {
+            case ADMITTED:
+                if (!dispatcher.submit(update)) {
+                    admission.release();
+                    return false;
+                }
+                return true;
+            case OVERLOAD:
+                return false;
+            case CHAT_LIMIT:
+                if (chatId != 0) {
+                    sendResponse(chatId, config.current().getTemplates().rateLimited());
+                }
+                return true;
+            default:
+                return true;
+        }
+    }
+
+    @Override
+    public void onClosing() {
+        close(System.nanoTime() + TimeUnit.SECONDS.toNanos(30));
+    }
+
+    /**
+     * Дорабатывает принятые обновления, дописывает журналы и отправляет ответы; ждёт не позже
+     * deadline (по System.nanoTime). Возвращает false, если что-то не успело. Повторный вызов ничего не делает.
+     */
+    public boolean close(long deadline) {
+        if (!closed.compareAndSet(false, true)) {
+            return true;
+        }
+        boolean drained = dispatcher.close(remainingNanos(deadline), TimeUnit.NANOSECONDS);
+        // журналы — после диспетчера: в них пишут обработчики
+        boolean journaled = journal == null || journal.close(remainingNanos(deadline), TimeUnit.NANOSECONDS);
+        if (audit != null) {
+            audit.close();
+        }
+        boolean sent = outbound.close(remainingNanos(deadline), TimeUnit.NANOSECONDS);
+        config.close();
+        super.onClosing();
+        return drained && journaled && sent;
+    }
+
+    private static long remainingNanos(long deadline) {
+        return Math.max(0, deadline - System.nanoTime());
+    }
+
+    public Tenant getTenant() {
+        return tenant;
+    }
+
+    AdmissionControl getAdmission() {
+        return admission;
+    }
+
+    SessionStore<UserState> getSessions() {
+        return userStates;
+    }
+
+    UpdateDispatcher getDispatcher() {
+        return dispatcher;
+    }
+
+    RiskConfigHolder getConfig() {
+        return config;
+    }
+
+    OutboundSender getOutbound() {
+        return outbound;
+    }
+
+    SessionJournal getJournal() {
+        return journal;
+    }
+
+    AssessmentStats getStats() {
+        return stats;
+    }
+
+    AuditLog getAudit() {
+        return audit;
+    }
+
+    BotMetrics getMetrics() {
+        return metrics;
+    }
+
+    // Вызывается диспетчером; обновления одного чата приходят сюда строго по очереди
+    private void handleAdmitted(Update update) {
+        try {
+            handleUpdate(update);
+        } finally {
+            admission.release();
+        }
+    }
+
+    void handleUpdate(Update update) {
+        long started = System.nanoTime();
+        if (update.hasMessage()) {
+            handleMessage(update.getMessage());
+        } else if (update.hasCallbackQuery()) {
+            handleCallback(update.getCallbackQuery());
+        } else {
             return;
         }
+        metrics.stage(BotMetrics.Stage.HANDLE).recordSince(started);
+    }
 
-        Message message = update.getMessage();
-        String chatId = message.getChatId().toString();
+    private void handleMessage(Message message) {
+        long chatId = message.getChatId();
+        if (message.hasDocument()) {
+            metrics.command(BotMetrics.Command.DOCUMENT);
+            try {
+                handleDocument(chatId, message.getDocument());
+            } catch (Exception e) {
+                sendErrorResponse(chatId, "Ошибка обработки файла: " + e.getMessage());
+            }
+            return;
+        }
+        if (!message.hasText()) {
+            return;
+        }
         String text = message.getText().trim();
 
         try {
-            UserState userState = userStates.computeIfAbsent(chatId, k -> new UserState());
+            UserState userState = userStates.getOrCreate(chatId);
 
             if (text.startsWith("/")) {
                 handleCommand(chatId, text);
@@ -53,308 +395,349 @@ public class RiskBot extends TelegramLongPollingBot {
             } else {
                 handleParameterInput(chatId, text, userState);
             }
+            saveSession(chatId, userState);
         } catch (Exception e) {
+            metrics.failure(BotMetrics.Failure.ERROR);
             sendErrorResponse(chatId, "Произошла ошибка: " + e.getMessage());
         }
     }
 
-    private void handleCommand(String chatId, String command) throws TelegramApiException {
+    // Снимок сессии уходит в журнал с отложенной записью, диск здесь не трогается
+    private void saveSession(long chatId, UserState userState) {
+        if (journal == null) {
+            return;
+        }
+        int index = userState.getCurrentParameterIndex();
+        RiskDataStorage storage = userState.getStorage();
+        journal.save(new SessionJournal.Record(chatId, System.currentTimeMillis(),
+                index == 0 ? 0 : storage.getVersion(), userState.isSkipWelcome(),
+                index, Arrays.copyOf(userState.getValues(), index)));
+    }
+
+    // Вызывается хранилищем сессий при промахе: сессия поднимается из журнала при первом сообщении после перезапуска
+    private UserState restoreSession(long chatId) {
+        SessionJournal.Record record = journal.load(chatId);
+        if (record == null) {
+            return null;
+        }
+        UserState userState = new UserState();
+        userState.setSkipWelcome(record.isSkipWelcome());
+
+        // введённые значения продолжаем, только если конфигурация с тех пор не менялась
+        RiskDataStorage current = config.current();
+        int index = record.getParameterIndex();
+        if (index > 0 && record.getConfigVersion() == current.getVersion()
+                && index < current.getSchema().size() && record.getValues().length == index) {
+            userState.restore(current, index, record.getValues());
+        }
+        return userState;
+    }
+
+    private void handleCommand(long chatId, String command) {
+        if (command.equals("/stats") || command.startsWith("/stats ")) {
+            metrics.command(BotMetrics.Command.STATS);
+            sendStats(chatId, command.substring("/stats".length()).trim());
+            return;
+        }
         switch (command) {
             case "/start":
+                metrics.command(BotMetrics.Command.START);
                 sendWelcomeMessage(chatId);
                 break;
             case "/help":
+                metrics.command(BotMetrics.Command.HELP);
                 sendHelpMessage(chatId);
                 break;
             default:
-                sendResponse(chatId, "Неизвестная команда. Введите /help для списка команд.");
+                metrics.command(BotMetrics.Command.UNKNOWN);
+                sendResponse(chatId, config.current().getTemplates().unknownCommand());
         }
     }
 
-    private void handleParameterInput(String chatId, String text, UserState userState) throws TelegramApiException {
-        try {
-            String paramName = userState.getCurrentParameterName();
-
-            // Проверка введенного значения на соответствие диапазону
-            boolean isValid = false;
-
-            if (paramName.contains("pH крови") || paramName.contains("PaO2")) {
-                Double value = Double.parseDouble(text);
-                isValid = validateRange(paramName, value);
-            } else if (paramName.contains("Возраст") || paramName.contains("Апгар") || paramName.contains("Вес")) {
-                Integer value = Integer.parseInt(text);
-                isValid = validateRange(paramName, value);
-            } else if (paramName.contains("пороки") || paramName.contains("Интубация")) {
-                int value = Integer.parseInt(text);
-                if (value != 0 && value != 1) {
-                    throw new IllegalArgumentException("Введите 0 или 1.");
-                }
-                isValid = true;
-            }
+    private void handleParameterInput(long chatId, String text, UserState userState) {
+        if (userState.getCurrentParameterIndex() == 0) {
+            userState.begin(config.current()); // вся оценка идёт на одном снимке конфигурации
+        }
+        RiskDataStorage storage = userState.getStorage();
 
-            if (!isValid) {
-                sendResponse(chatId, "⚠️ Значение не в допустимом диапазоне. Пожалуйста, введите корректное значение.");
-                return;  // Не продолжаем, если значение неверное
-            }
+        // Все параметры одной строкой через запятую — считаем сразу
+        if (BatchAssessment.countFields(text, ',') == storage.getSchema().size()) {
+            handleParameterLine(chatId, text, userState);
+            return;
+        }
+        metrics.command(BotMetrics.Command.PARAMETER);
 
-            // Продолжаем, если значение корректное
-            userState.addParameterValue(text);
+        ParameterSchema.Parameter parameter = storage.getSchema().get(userState.getCurrentParameterIndex());
 
-            if (userState.isComplete()) {
-                processFinalParameters(chatId, userState);
-            } else {
-                sendResponse(chatId, "Введите следующий параметр: " +
-                        getFormattedParameterPrompt(userState.getCurrentParameterName()));
-            }
+        // Значение разбирается один раз, по типу из схемы; неверный формат — NaN, без исключений
+        long stageStart = System.nanoTime();
+        double value = parameter.getType().parse(text);
+        metrics.stage(BotMetrics.Stage.PARSE).recordSince(stageStart);
+        if (Double.isNaN(value)) {
+            metrics.failure(BotMetrics.Failure.FORMAT);
+            sendResponse(chatId, storage.getTemplates().invalidFormat());
+            return;
+        }
+
+        // Проверка введенного значения на соответствие диапазону
+        stageStart = System.nanoTime();
+        String error = BatchAssessment.checkValue(storage.getScoringTable(), parameter, value);
+        metrics.stage(BotMetrics.Stage.VALIDATE).recordSince(stageStart);
+        if (error != null) {
+            metrics.failure(BotMetrics.Failure.RANGE);
+            sendResponse(chatId, "⚠️ " + error);
+            return;  // Не продолжаем, если значение неверное
+        }
 
-        } catch (NumberFormatException e) {
-            sendResponse(chatId, "⚠️ Неверный формат. Пожалуйста, введите корректное числовое значение.");
-        } catch (IllegalArgumentException e) {
-            sendResponse(chatId, "⚠️ " + e.getMessage());
+        // Продолжаем, если значение корректное
+        userState.addParameterValue(value);
+        if (userState.getCurrentParameterIndex() == 1) {
+            metrics.assessmentStarted(); // оценка считается начатой с первого принятого значения
+        }
+
+        if (userState.isComplete()) {
+            processFinalParameters(chatId, userState);
+        } else {
+            int next = userState.getCurrentParameterIndex();
+            sendOrEdit(chatId, null, storage.getTemplates().nextParameter(next), storage.getKeyboards().get(next));
         }
     }
 
-    private boolean validateRange(String paramName, double value) {
-        RiskDataStorage.ParameterConfig config = storage.getParameterConfig(getParameterKey(paramName));
-        for (RiskDataStorage.Range range : config.getRanges()) {
-            if (value >= range.getMin() && value <= range.getMax()) {
-                return true;
-            }
+    private void handleParameterLine(long chatId, String text, UserState userState) {
+        metrics.command(BotMetrics.Command.LINE);
+        RiskDataStorage storage = config.current();
+        // в строке разбор и проверка диапазонов идут одним проходом; разбираем во временный массив,
+        // чтобы строка с ошибкой не стёрла значения, уже введённые по шагам
+        double[] parsed = new double[storage.getSchema().size()];
+        long stageStart = System.nanoTime();
+        String error = new BatchAssessment(storage).parseLine(text, ',', parsed);
+        metrics.stage(BotMetrics.Stage.PARSE).recordSince(stageStart);
+        if (error != null) {
+            metrics.failure(BotMetrics.Failure.FORMAT);
+            sendResponse(chatId, "⚠️ " + error);
+            return;
         }
-        return false;
+        userState.begin(storage);
+        System.arraycopy(parsed, 0, userState.getValues(), 0, parsed.length);
+        metrics.assessmentStarted();
+        processFinalParameters(chatId, userState);
     }
 
-    private boolean validateRange(String paramName, int value) {
-        RiskDataStorage.ParameterConfig config = storage.getParameterConfig(getParameterKey(paramName));
-        for (RiskDataStorage.Range range : config.getRanges()) {
-            if (value >= range.getMin() && value <= range.getMax()) {
-                return true;
-            }
+    // CSV со множеством пациентов: читаем и пишем потоково, в чат отправляем один файл с результатами
+    private void handleDocument(long chatId, Document document) throws TelegramApiException, IOException {
+        String fileName = document.getFileName();
+        if (fileName == null || !fileName.toLowerCase().endsWith(".csv")) {
+            sendResponse(chatId, "⚠️ Поддерживаются только CSV-файлы.");
+            return;
         }
-        return false;
-    }
-
-    private String getParameterKey(String paramName) {
-        switch (paramName) {
-            case "pH крови":
-                return "ph";
-            case "Возраст в часах":
-                return "age";
-            case "Оценка по Апгар":
-                return "apgar";
-            case "Вес при рождении":
-                return "weight";
-            case "PaO2":
-                return "pao2";
-            case "Врожденные пороки (0 - нет, 1 - да)":
-                return "malformations";
-            case "Интубация (0 - нет, 1 - да)":
-                return "intubation";
-            default:
-                return "";
-        }
-    }
-
-
-    private String getFormattedParameterPrompt(String paramName) {
-        switch (paramName) {
-            case "pH крови":
-                return "pH крови (уровень кислотности крови; например: 7.2)";
-            case "Возраст в часах":
-                return "Возраст в часах (возраст новорождённого на момент оценки; например: 5)";
-            case "Оценка по Апгар":
-                return "Оценка по шкале Апгар (от 0 до 10; например: 6)";
-            case "Вес при рождении":
-                return "Вес при рождении в граммах (например: 3200)";
-            case "PaO2":
-                return "PaO2 в кПа (парциальное давление кислорода в артериальной крови; например: 4.5)";
-            case "Врожденные пороки (0 - нет, 1 - да)":
-                return "Врожденные пороки: введите 0 (нет) или 1 (есть)";
-            case "Интубация (0 - нет, 1 - да)":
-                return "Интубация: введите 0 (нет) или 1 (да)";
-            default:
-                return paramName;
+
+        org.telegram.telegrambots.meta.api.objects.File file = execute(new GetFile(document.getFileId()));
+        Path output = Files.createTempFile("assessment-", ".csv");
+        boolean queued = false;
+        try {
+            BatchAssessment.Summary summary;
+            try (InputStream in = downloadFileAsStream(file);
+                 BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+                 Writer writer = Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
+                summary = new BatchAssessment(config.current()).processCsv(reader, writer);
+            }
+
+            SendDocument result = new SendDocument();
+            result.setChatId(Long.toString(chatId));
+            result.setDocument(new InputFile(output.toFile(), "results_" + fileName));
+            result.setCaption("Обработано пациентов: " + summary.getRows() + ", с ошибками: " + summary.getErrors());
+            // временный файл удаляется, когда очередь отправит документ
+            outbound.send(chatId, result, () -> deleteQuietly(output));
+            queued = true;
+        } finally {
+            if (!queued) {
+                Files.deleteIfExists(output);
+            }
         }
     }
 
-    private void processFinalParameters(String chatId, UserState userState) throws TelegramApiException {
+    private static void deleteQuietly(Path path) {
         try {
-            List<String> params = userState.parameterValues;
-            double pH = Double.parseDouble(params.get(0));
-            int возрастЧасы = Integer.parseInt(params.get(1));
-            int апгар = Integer.parseInt(params.get(2));
-            int вес = Integer.parseInt(params.get(3));
-            double paO2 = Double.parseDouble(params.get(4));
-            int пороки = Integer.parseInt(params.get(5));
-            int интубация = Integer.parseInt(params.get(6));
-
-            int баллы = calculateHermansenScore(pH, возрастЧасы, апгар, вес, paO2, пороки, интубация);
-            double вероятность = calculateMortalityProbability(pH, возрастЧасы, апгар, вес, paO2, пороки, интубация);
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            // вызывается из потока отправки — исключение там некому обработать
+            System.err.println("Не удалось удалить временный файл " + path + ": " + e.getMessage());
+        }
+    }
 
-            String результат = buildAssessmentResponse(баллы, вероятность, pH, возрастЧасы, апгар, вес, paO2, пороки, интубация);
-            sendResponse(chatId, результат);
+    // Нажатие кнопки: значение берётся из кнопки без разбора текста, а сообщение с вопросом
+    // редактируется на месте — следующим вопросом или результатом
+    private void handleCallback(CallbackQuery query) {
+        metrics.command(BotMetrics.Command.BUTTON);
+        Message message = query.getMessage();
+        if (message == null) {
+            answerCallback(query, null);
+            return;
+        }
+        long chatId = message.getChatId();
+        try {
+            UserState userState = userStates.getOrCreate(chatId);
+            if (userState.getCurrentParameterIndex() == 0) {
+                userState.begin(config.current());
+            }
+            RiskDataStorage storage = userState.getStorage();
+            ParameterKeyboards keyboards = storage.getKeyboards();
+            int code = keyboards.decode(query.getData());
+            // кнопка от уже пройденного вопроса или от прежней конфигурации
+            if (code < 0 || ParameterKeyboards.parameterOf(code) != userState.getCurrentParameterIndex()) {
+                answerCallback(query, storage.getTemplates().staleButton());
+                return;
+            }
+            answerCallback(query, null);
 
-            userState.reset();
+            int index = userState.getCurrentParameterIndex();
+            userState.addParameterValue(keyboards.valueOf(code));
+            if (index == 0) {
+                metrics.assessmentStarted();
+            }
+            StringBuilder text = new StringBuilder(256);
+            storage.getTemplates().appendChoice(text, index, keyboards.labelOf(code));
+            if (userState.isComplete()) {
+                processFinalParameters(chatId, userState, message.getMessageId(), text.toString());
+            } else {
+                int next = userState.getCurrentParameterIndex();
+                text.append(storage.getTemplates().nextParameter(next));
+                sendOrEdit(chatId, message.getMessageId(), text.toString(), keyboards.get(next));
+            }
+            saveSession(chatId, userState);
         } catch (Exception e) {
-            sendErrorResponse(chatId, "Ошибка расчета: " + e.getMessage());
-            userState.reset();
+            metrics.failure(BotMetrics.Failure.ERROR);
+            sendErrorResponse(chatId, "Произошла ошибка: " + e.getMessage());
         }
     }
 
-    private int calculateHermansenScore(double pH, int возрастЧасы, int апгар, int вес,
-                                        double paO2, int пороки, int интубация) {
-        int баллы = 0;
-        баллы += storage.getParameterConfig("ph").findRange(pH).getScore();
-        баллы += storage.getParameterConfig("age").findRange(возрастЧасы).getScore();
-        баллы += storage.getParameterConfig("apgar").findRange(апгар).getScore();
-        баллы += storage.getParameterConfig("weight").findRange(вес).getScore();
-        баллы += storage.getParameterConfig("pao2").findRange(paO2).getScore();
-        баллы += storage.getParameterConfig("malformations").findRange(пороки).getScore();
-        баллы += storage.getParameterConfig("intubation").findRange(интубация).getScore();
-        return баллы;
+    // Ответ на нажатие убирает индикатор загрузки на кнопке; идёт мимо очереди — это не сообщение в чат
+    private void answerCallback(CallbackQuery query, String text) {
+        AnswerCallbackQuery answer = new AnswerCallbackQuery();
+        answer.setCallbackQueryId(query.getId());
+        answer.setText(text);
+        transmit(answer);
     }
 
-    private double calculateMortalityProbability(double pH, int возрастЧасы, int апгар, int вес,
-                                                 double paO2, int пороки, int интубация) {
-        RiskDataStorage.ProbabilityFormula formula = storage.getProbabilityFormula();
-        double logit = formula.calculateLogit(pH, возрастЧасы, апгар, вес, paO2, пороки, интубация);
-        return Math.exp(logit) / (1 + Math.exp(logit));
+    // messageId — сообщение, которое заменяется новым текстом, или null для нового сообщения
+    private void sendOrEdit(long chatId, Integer messageId, String text, InlineKeyboardMarkup keyboard) {
+        if (messageId != null) {
+            EditMessageText edit = new EditMessageText();
+            edit.setChatId(Long.toString(chatId));
+            edit.setMessageId(messageId);
+            edit.setText(text);
+            edit.setReplyMarkup(keyboard);
+            outbound.send(chatId, edit, null);
+        } else if (keyboard != null) {
+            SendMessage send = new SendMessage();
+            send.setChatId(Long.toString(chatId));
+            send.setText(text);
+            send.setReplyMarkup(keyboard);
+            outbound.send(chatId, send, null);
+        } else {
+            sendResponse(chatId, text);
+        }
     }
 
-    private String buildAssessmentResponse(int баллы, double вероятность,
-                                           double pH, int возрастЧасы, int апгар, int вес,
-                                           double paO2, int пороки, int интубация) {
-        RiskDataStorage.RiskLevel уровеньРиска = storage.getRiskLevel(баллы);
+    private void processFinalParameters(long chatId, UserState userState) {
+        processFinalParameters(chatId, userState, null, "");
+    }
 
-        StringBuilder ответ = new StringBuilder();
-        ответ.append("⚕️ Результаты оценки риска транспортировки ⚕️\n\n");
-        ответ.append("▉ Общий балл: ").append(баллы).append(" из 40\n");
-        ответ.append("▉ Диагноз: ").append(уровеньРиска.getDiagnosis()).append("\n");
-        ответ.append("▉ Вероятность: ").append(уровеньРиска.getProbabilityRange()).append("\n\n");
+    private void processFinalParameters(long chatId, UserState userState, Integer editMessageId, String prefix) {
+        try {
+            RiskDataStorage storage = userState.getStorage();
+            long stageStart = System.nanoTime();
+            ScoringTable.Result result = calculateAssessment(storage, userState.getValues(), userState.getResult());
+            metrics.stage(BotMetrics.Stage.SCORE).recordSince(stageStart);
+
+            stageStart = System.nanoTime();
+            String результат = buildAssessmentResponse(storage, result, userState.getValues(), userState.getBuffer());
+            metrics.stage(BotMetrics.Stage.RENDER).recordSince(stageStart);
+            sendOrEdit(chatId, editMessageId, prefix.isEmpty() ? результат : prefix + результат, null);
+            metrics.assessmentCompleted(result);
+            stats.record(System.currentTimeMillis(), result, userState.getValues().length);
+            if (audit != null) {
+                audit.append(chatId, storage.getVersion(), result, userState.getValues());
+            }
 
-        ответ.append("📋 Детализация параметров:\n");
-        ответ.append(formatParameterDetail("pH крови", pH, "ph"));
-        ответ.append(formatParameterDetail("Возраст", возрастЧасы, "age"));
-        ответ.append(formatParameterDetail("Оценка по Апгар", апгар, "apgar"));
-        ответ.append(formatParameterDetail("Вес при рождении", вес, "weight"));
-        ответ.append(formatParameterDetail("PaO2", paO2, "pao2"));
-        ответ.append(formatParameterDetail("Врожденные пороки", пороки, "malformations"));
-        ответ.append(formatParameterDetail("Интубация", интубация, "intubation"));
+            userState.reset();
+        } catch (Exception e) {
+            metrics.failure(BotMetrics.Failure.ERROR);
+            sendErrorResponse(chatId, "Ошибка расчета: " + e.getMessage());
+            userState.reset();
+        }
+    }
 
-        ответ.append("\n🚑 Рекомендации:\n").append(уровеньРиска.getRecommendation());
-        ответ.append("\n\n🔁 Для нового тестирования введите /start");
+    // Баллы по Хермансену, вероятность и уровень риска за один проход по скомпилированной таблице;
+    // для уже встречавшегося набора диапазонов балл, уровень и текст ответа берутся из кэша снимка
+    ScoringTable.Result calculateAssessment(RiskDataStorage storage, double[] values, ScoringTable.Result out) {
+        return storage.getScoringTable().evaluate(values, out, storage.getResultCache());
+    }
 
-        return ответ.toString();
+    String buildAssessmentResponse(RiskDataStorage storage, ScoringTable.Result result, double[] values,
+                                   StringBuilder buffer) {
+        buffer.setLength(0);
+        storage.getTemplates().renderAssessment(buffer, result, values);
+        return buffer.toString();
     }
 
-    private String formatParameterDetail(String paramName, double value, String configKey) {
-        RiskDataStorage.ParameterConfig config = storage.getParameterConfig(configKey);
-        RiskDataStorage.Range range = config.findRange(value);
-        return String.format("• %s: %.1f %s - %s (%d баллов)\n",
-                paramName, value, config.getUnit(), range.getComment(), range.getScore());
+    // /stats N — тренд за N последних дней (по умолчанию 7)
+    private void sendStats(long chatId, String argument) {
+        int days = STATS_DEFAULT_DAYS;
+        if (!argument.isEmpty()) {
+            double parsed = ParameterSchema.ValueType.parseInteger(argument);
+            days = Double.isNaN(parsed) ? -1 : (int) parsed;
+            if (days < 1 || days > STATS_MAX_DAYS) {
+                sendErrorResponse(chatId, "Укажите число дней от 1 до " + STATS_MAX_DAYS);
+                return;
+            }
+        }
+        StringBuilder text = new StringBuilder(2048);
+        config.current().getTemplates().renderStats(text,
+                stats.summary(LocalDate.now(ZoneId.systemDefault()), days));
+        sendResponse(chatId, text.toString());
     }
 
-    private void sendWelcomeMessage(String chatId) throws TelegramApiException {
-        UserState userState = userStates.computeIfAbsent(chatId, k -> new UserState());
+    private void sendWelcomeMessage(long chatId) {
+        UserState userState = userStates.getOrCreate(chatId);
+        MessageTemplates templates = config.current().getTemplates();
 
+        userState.reset();
+        InlineKeyboardMarkup keyboard = config.current().getKeyboards().get(0);
         if (userState.isSkipWelcome()) {
-            userState.reset();
-            sendResponse(chatId, "Первый параметр: " +
-                    getFormattedParameterPrompt(userState.getCurrentParameterName()));
+            sendOrEdit(chatId, null, templates.firstParameter(), keyboard);
         } else {
-            userState.reset();
-            String message = "👶 Добро пожаловать в бот оценки риска транспортировки новорожденных!\n\n" +
-                    "Бот будет запрашивать параметры по одному.\n\n" +
-                    "Введите /help для подробной инструкции или начните сразу с ввода параметров. \n\n" +
-                    "Первый параметр: " +
-                    getFormattedParameterPrompt(userState.getCurrentParameterName());
-            sendResponse(chatId, message);
+            sendOrEdit(chatId, null, templates.welcome(), keyboard);
         }
 
         userState.setSkipWelcome(false); // сбрасываем после старта
     }
 
-    private void sendHelpMessage(String chatId) throws TelegramApiException {
-        String message = "📋 Инструкция по использованию бота:\n\n" +
-                "1. Подготовьте следующие данные пациента:\n" +
-                "   - Анализ крови (pH, PaO2)\n" +
-                "   - Основные антропометрические данные\n" +
-                "   - Информацию о состоянии при рождении\n\n" +
-                "2. Введите все 7 параметров через запятую в строгом порядке:\n" +
-                "   - pH крови\n" +
-                "   - Возраст в часах\n" +
-                "   - Оценка по Апгар (1-я минута)\n" +
-                "   - Вес при рождении (г)\n" +
-                "   - PaO2 (кПа)\n" +
-                "   - Наличие пороков (0/1)\n" +
-                "   - Интубация (0/1)\n\n" +
-                "3. Бот рассчитает и вернет:\n" +
-                "   - Общий балл риска\n" +
-                "   - Уровень риска\n" +
-                "   - Вероятность неблагоприятного исхода\n" +
-                "   - Подробную интерпретацию\n" +
-                "   - Рекомендации по транспортировке\n\n" +
-                "Пример ввода: 7.25, 2, 5, 1800, 4.8, 0, 1\n\n" +
-                "Если вы ознакомились с инструкцией, введите /start, чтобы начать ввод параметров.";
-        sendResponse(chatId, message);
+    private void sendHelpMessage(long chatId) {
+        sendResponse(chatId, config.current().getTemplates().help());
 
         // пометить, что пользователь ознакомился
-        userStates.computeIfAbsent(chatId, k -> new UserState()).setSkipWelcome(true);
+        userStates.getOrCreate(chatId).setSkipWelcome(true);
     }
 
-    private void sendResponse(String chatId, String text) throws TelegramApiException {
-        SendMessage message = new SendMessage();
-        message.setChatId(chatId);
-        message.setText(text);
-        execute(message);
+    // Ответ ставится в исходящую очередь, обработчик обновления не ждёт сети
+    private void sendResponse(long chatId, String text) {
+        outbound.sendText(chatId, text);
     }
 
-    private void sendErrorResponse(String chatId, String text) {
-        try {
-            sendResponse(chatId, "⚠️ " + text);
-        } catch (TelegramApiException e) {
-            e.printStackTrace();
-        }
+    private void sendErrorResponse(long chatId, String text) {
+        sendResponse(chatId, "⚠️ " + text);
     }
 
-    private static class UserState {
-        private int currentParamIndex = 0;
-        private boolean skipWelcome = false;
-        private final List<String> parameterValues = new ArrayList<>();
-        private final String[] parameterNames = {
-                "pH крови",
-                "Возраст в часах",
-                "Оценка по Апгар",
-                "Вес при рождении",
-                "PaO2",
-                "Врожденные пороки (0 - нет, 1 - да)",
-                "Интубация (0 - нет, 1 - да)"
-        };
-
-        public String getCurrentParameterName() {
-            return parameterNames[currentParamIndex];
+    @SuppressWarnings("unchecked")
+    private CompletableFuture<?> transmit(PartialBotApiMethod<?> method) {
+        if (method instanceof SendDocument) {
+            return executeAsync((SendDocument) method);
         }
-
-        public void addParameterValue(String value) {
-            parameterValues.add(value);
-            currentParamIndex++;
-        }
-
-        public boolean isComplete() {
-            return currentParamIndex >= parameterNames.length;
-        }
-
-        public void reset() {
-            currentParamIndex = 0;
-            parameterValues.clear();
-        }
-
-        public boolean isSkipWelcome() {
-            return skipWelcome;
-        }
-
-        public void setSkipWelcome(boolean skipWelcome) {
-            this.skipWelcome = skipWelcome;
+        try {
+            return executeAsync((BotApiMethod<Serializable>) method);
+        } catch (TelegramApiException e) {
+            return CompletableFuture.failedFuture(e);
         }
     }
 }
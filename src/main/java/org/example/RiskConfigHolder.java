@@ -0,0 +1,162 @@
+package org.example;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Текущий снимок конфигурации риска с горячей перезагрузкой.
+ * Если задан внешний файл (переменная окружения RISK_CONFIG или свойство risk.config),
+ * он отслеживается через WatchService: новый снимок загружается и компилируется в фоновом потоке
+ * и публикуется одной записью volatile-ссылки. Читатели ничего не блокируют;
+ * ошибочный файл не заменяет рабочую конфигурацию.
+ * Файл может быть символической ссылкой (так монтируется ConfigMap в Kubernetes: ссылка ведёт через
+ * каталог ..data, который при обновлении подменяется целиком). Отслеживаются каталог ссылки и каталог,
+ * где лежит настоящий файл; любое событие в них, после которого ссылка указывает на другой файл, — тоже изменение.
+ */
+public class RiskConfigHolder implements AutoCloseable {
+    // Редакторы часто пишут файл в несколько приёмов — ждём, пока изменения утихнут
+    private static final long SETTLE_MILLIS = 200;
+
+    private final Path path;
+    private volatile RiskDataStorage current;
+    private volatile WatchService watchService;
+    private Thread watcher;
+    private Path target; // настоящий файл за ссылками на момент последней загрузки; меняет только watcher
+
+    private final AtomicLong reloads = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private volatile long lastReloadNanos;
+    private volatile String lastError;
+
+    public RiskConfigHolder(Path path) {
+        this.path = path;
+        this.current = path == null ? RiskDataStorage.builtin() : RiskDataStorage.load(path);
+    }
+
+    /**
+     * Путь из окружения или null, если используется встроенный risk_config.json.
+     */
+    public static Path configuredPath() {
+        String value = System.getProperty("risk.config", System.getenv("RISK_CONFIG"));
+        return value == null || value.isBlank() ? null : Path.of(value).toAbsolutePath();
+    }
+
+    public RiskDataStorage current() {
+        return current;
+    }
+
+    public void start() throws IOException {
+        if (path == null || watcher != null) {
+            return;
+        }
+        watchService = FileSystems.getDefault().newWatchService();
+        target = resolveTarget();
+        path.getParent().register(watchService,
+                StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        if (!target.getParent().equals(path.getParent())) {
+            target.getParent().register(watchService,
+                    StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        }
+        watcher = new Thread(this::watch, "risk-config-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    /**
+     * Загружает файл заново. Возвращает true, если новый снимок опубликован.
+     */
+    public boolean reload() {
+        long started = System.nanoTime();
+        try {
+            RiskDataStorage loaded = RiskDataStorage.load(path);
+            if (loaded.getVersion() != current.getVersion()) {
+                current = loaded;
+                reloads.incrementAndGet();
+            }
+            lastError = null;
+            return true;
+        } catch (RuntimeException e) {
+            failures.incrementAndGet();
+            lastError = e.getCause() != null ? e.getCause().getMessage() : e.getMessage();
+            System.err.println("Конфигурация " + path + " не применена: " + lastError);
+            return false;
+        } finally {
+            lastReloadNanos = System.nanoTime() - started;
+        }
+    }
+
+    private void watch() {
+        Path fileName = path.getFileName();
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                boolean changed = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    changed |= fileName.equals(event.context()) || target.getFileName().equals(event.context());
+                }
+                key.reset();
+                // ссылку перенаправили (подмена ..data у ConfigMap) — имя самого файла в событиях не встречается
+                changed |= !resolveTarget().equals(target);
+                if (!changed) {
+                    continue;
+                }
+
+                // собираем пачку событий от одной записи файла
+                WatchKey next;
+                while ((next = watchService.poll(SETTLE_MILLIS, TimeUnit.MILLISECONDS)) != null) {
+                    next.pollEvents();
+                    next.reset();
+                }
+                target = resolveTarget();
+                reload();
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // остановка
+        }
+    }
+
+    private Path resolveTarget() {
+        try {
+            return path.toRealPath();
+        } catch (IOException e) {
+            return path; // файла сейчас нет, например, в момент подмены
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            if (watchService != null) {
+                watchService.close();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // Метрики
+
+    public long getReloadCount() {
+        return reloads.get();
+    }
+
+    public long getFailureCount() {
+        return failures.get();
+    }
+
+    public long getLastReloadNanos() {
+        return lastReloadNanos;
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+}
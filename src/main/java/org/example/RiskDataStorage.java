@@ -1,37 +1,163 @@
 package org.example;
 
+import com.fasterxml.jackson.annotation.JsonAnySetter;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.io.InputStream;
+import java.lang.ref.WeakReference;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongFunction;
+import java.util.zip.CRC32;
+
+/**
+ * Неизменяемый снимок конфигурации риска. При перезагрузке создаётся новый снимок,
+ * старый продолжают использовать начатые на нём оценки.
+ */
 public class RiskDataStorage {
+    // Скомпилированные снимки по версии: боты с одинаковой конфигурацией используют одни таблицы и шаблоны
+    private static final ConcurrentHashMap<Long, WeakReference<RiskDataStorage>> SHARED = new ConcurrentHashMap<>();
+    private static final String BUILTIN_COMPILED = "/risk_config.bin";
+
     private final Map<String, ParameterConfig> parameters;
     private final List<RiskLevel> riskLevels;
     private final ProbabilityFormula probabilityFormula;
+    private final ParameterSchema schema;
+    private final ScoringTable scoringTable;
+    private final MessageTemplates templates;
+    private final ParameterKeyboards keyboards;
+    private final ResultCache resultCache;
+    private final long version;
+    private final byte[] content;
 
     public RiskDataStorage() {
-        try {
-            ObjectMapper mapper = new ObjectMapper();
-            InputStream is = getClass().getResourceAsStream("/risk_config.json");
-            if (is == null) {
-                throw new FileNotFoundException("Файл конфигурации risk_config.json не найден");
-            }
+        this(readResource());
+    }
+
+    public RiskDataStorage(Path path) {
+        this(readFile(path));
+    }
+
+    RiskDataStorage(byte[] content) {
+        this(content, null);
+    }
 
-            Config config = mapper.readValue(is, Config.class);
+    // precompiled — готовая конфигурация из двоичного файла ConfigCompiler, иначе разбираем JSON
+    private RiskDataStorage(byte[] content, Config precompiled) {
+        try {
+            Config config = precompiled != null ? precompiled : Json.MAPPER.readValue(content, Config.class);
 
             this.parameters = config.getParameters();
             this.riskLevels = config.getRiskLevels();
             this.probabilityFormula = config.getProbabilityFormula();
+            validate();
+            this.schema = new ParameterSchema(parameters);
+            this.scoringTable = new ScoringTable(schema, riskLevels, probabilityFormula);
+            this.templates = new MessageTemplates(schema, scoringTable);
+            this.resultCache = new ResultCache(templates);
+
+            // версия — контрольная сумма содержимого, одинаковая для одинаковых файлов
+            CRC32 crc = new CRC32();
+            crc.update(content);
+            this.version = crc.getValue();
+            this.keyboards = new ParameterKeyboards(schema, scoringTable, version);
+            this.content = content;
 
         } catch (Exception e) {
             throw new RuntimeException("Ошибка загрузки конфигурации", e);
         }
     }
 
+    /**
+     * Снимок встроенного risk_config.json, общий для всех, кто его использует.
+     */
+    public static RiskDataStorage builtin() {
+        return shared(readResource(), crc -> ConfigCompiler.readResource(BUILTIN_COMPILED, crc));
+    }
+
+    /**
+     * Снимок файла конфигурации; если такой же файл уже скомпилирован, возвращается готовый снимок.
+     */
+    public static RiskDataStorage load(Path path) {
+        return shared(readFile(path), crc -> ConfigCompiler.readFile(ConfigCompiler.compiledPath(path), crc));
+    }
+
+    static RiskDataStorage shared(byte[] content) {
+        return shared(content, crc -> null);
+    }
+
+    // compiled ищет двоичную форму с той же контрольной суммой; без неё конфигурация разбирается Jackson
+    private static RiskDataStorage shared(byte[] content, LongFunction<Config> compiled) {
+        CRC32 crc = new CRC32();
+        crc.update(content);
+        long version = crc.getValue();
+
+        WeakReference<RiskDataStorage> ref = SHARED.get(version);
+        RiskDataStorage existing = ref == null ? null : ref.get();
+        if (existing != null && Arrays.equals(existing.content, content)) {
+            return existing;
+        }
+        RiskDataStorage created = new RiskDataStorage(content, compiled.apply(version));
+        SHARED.values().removeIf(r -> r.get() == null);
+        SHARED.put(version, new WeakReference<>(created));
+        return created;
+    }
+
+    private static byte[] readResource() {
+        try (InputStream is = RiskDataStorage.class.getResourceAsStream("/risk_config.json")) {
+            if (is == null) {
+                throw new FileNotFoundException("Файл конфигурации risk_config.json не найден");
+            }
+            return is.readAllBytes();
+        } catch (IOException e) {
+            throw new RuntimeException("Ошибка загрузки конфигурации", e);
+        }
+    }
+
+    private static byte[] readFile(Path path) {
+        try {
+            return Files.readAllBytes(path);
+        } catch (IOException e) {
+            throw new RuntimeException("Ошибка загрузки конфигурации " + path, e);
+        }
+    }
+
+    private void validate() {
+        if (parameters == null || parameters.isEmpty()) {
+            throw new IllegalStateException("В конфигурации нет параметров");
+        }
+        if (riskLevels == null || riskLevels.isEmpty()) {
+            throw new IllegalStateException("В конфигурации нет уровней риска");
+        }
+        if (probabilityFormula == null) {
+            throw new IllegalStateException("В конфигурации нет формулы вероятности");
+        }
+        for (Map.Entry<String, ParameterConfig> entry : parameters.entrySet()) {
+            List<Range> ranges = entry.getValue().getRanges();
+            if (ranges == null || ranges.isEmpty()) {
+                throw new IllegalStateException("У параметра " + entry.getKey() + " нет диапазонов");
+            }
+            for (Range range : ranges) {
+                if (!(range.getMin() <= range.getMax())) {
+                    throw new IllegalStateException("У параметра " + entry.getKey() + " неверный диапазон "
+                            + range.getMin() + ".." + range.getMax());
+                }
+            }
+        }
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
     public ParameterConfig getParameterConfig(String paramName) {
         return parameters.get(paramName);
     }
@@ -47,6 +173,27 @@ public class RiskDataStorage {
         return probabilityFormula;
     }
 
+    public ParameterSchema getSchema() {
+        return schema;
+    }
+
+    public MessageTemplates getTemplates() {
+        return templates;
+    }
+
+    ParameterKeyboards getKeyboards() {
+        return keyboards;
+    }
+
+    // Кэш живёт вместе со снимком: новая конфигурация — новый пустой кэш
+    ResultCache getResultCache() {
+        return resultCache;
+    }
+
+    public ScoringTable getScoringTable() {
+        return scoringTable;
+    }
+
     // Классы для десериализации JSON
     public static class Config {
         @JsonProperty("parameters")
@@ -58,6 +205,16 @@ public class RiskDataStorage {
         @JsonProperty("probabilityFormula")
         private ProbabilityFormula probabilityFormula;
 
+        Config() {
+        }
+
+        Config(Map<String, ParameterConfig> parameters, List<RiskLevel> riskLevels,
+               ProbabilityFormula probabilityFormula) {
+            this.parameters = parameters;
+            this.riskLevels = riskLevels;
+            this.probabilityFormula = probabilityFormula;
+        }
+
         public Map<String, ParameterConfig> getParameters() {
             return parameters;
         }
@@ -73,10 +230,28 @@ public class RiskDataStorage {
 
 
     public static class ParameterConfig {
+        private int order;
+        private ParameterSchema.ValueType type;
+        private String prompt;
+        private String label;
         private List<Range> ranges;
         private String unit;
         private String description;
 
+        ParameterConfig() {
+        }
+
+        ParameterConfig(int order, ParameterSchema.ValueType type, String prompt, String label,
+                        List<Range> ranges, String unit, String description) {
+            this.order = order;
+            this.type = type;
+            this.prompt = prompt;
+            this.label = label;
+            this.ranges = ranges;
+            this.unit = unit;
+            this.description = description;
+        }
+
         public Range findRange(double value) {
             return ranges.stream()
                     .filter(r -> value >= r.getMin() && value <= r.getMax())
@@ -84,6 +259,22 @@ public class RiskDataStorage {
                     .orElseThrow(() -> new IllegalArgumentException("Значение вне диапазона"));
         }
 
+        public int getOrder() {
+            return order;
+        }
+
+        public ParameterSchema.ValueType getType() {
+            return type;
+        }
+
+        public String getPrompt() {
+            return prompt;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
         public List<Range> getRanges() {
             return ranges;
         }
@@ -103,6 +294,16 @@ public class RiskDataStorage {
         private int score;
         private String comment;
 
+        Range() {
+        }
+
+        Range(double min, double max, int score, String comment) {
+            this.min = min;
+            this.max = max;
+            this.score = score;
+            this.comment = comment;
+        }
+
         public double getMin() {
             return min;
         }
@@ -120,6 +321,11 @@ public class RiskDataStorage {
         }
     }
 
+    // Jackson создаётся при первом разборе JSON: со скомпилированной конфигурацией запуск его не загружает
+    private static final class Json {
+        static final ObjectMapper MAPPER = new ObjectMapper();
+    }
+
     public static class RiskLevel {
         private int minScore;
         private int maxScore;
@@ -127,6 +333,17 @@ public class RiskDataStorage {
         private String recommendation;
         private String probabilityRange;
 
+        RiskLevel() {
+        }
+
+        RiskLevel(int minScore, int maxScore, String diagnosis, String recommendation, String probabilityRange) {
+            this.minScore = minScore;
+            this.maxScore = maxScore;
+            this.diagnosis = diagnosis;
+            this.recommendation = recommendation;
+            this.probabilityRange = probabilityRange;
+        }
+
         public int getMinScore() {
             return minScore;
         }
@@ -149,40 +366,44 @@ public class RiskDataStorage {
     }
 
     public static class ProbabilityFormula {
+        private static final String COEF_SUFFIX = "Coef";
+
         @JsonProperty("intercept")
         private double intercept;
 
-        @JsonProperty("ageCoef")
-        private double age_coef;
+        // Коэффициенты вида "<ключ параметра>Coef", например "phCoef"
+        private final Map<String, Double> coefficients = new LinkedHashMap<>();
 
-        @JsonProperty("apgarCoef")
-        private double apgar_coef;
-
-        @JsonProperty("weightCoef")
-        private double weight_coef;
+        ProbabilityFormula() {
+        }
 
-        @JsonProperty("pao2Coef")
-        private double pao2_coef;
+        ProbabilityFormula(double intercept, Map<String, Double> coefficients) {
+            this.intercept = intercept;
+            this.coefficients.putAll(coefficients);
+        }
 
-        @JsonProperty("phCoef")
-        private double ph_coef;
+        @JsonAnySetter
+        void setCoefficient(String name, double value) {
+            if (!name.endsWith(COEF_SUFFIX)) {
+                throw new IllegalArgumentException("Неизвестное поле формулы: " + name);
+            }
+            coefficients.put(name.substring(0, name.length() - COEF_SUFFIX.length()), value);
+        }
 
-        @JsonProperty("malformationsCoef")
-        private double malformations_coef;
+        public double getIntercept() {
+            return intercept;
+        }
 
-        @JsonProperty("intubationCoef")
-        private double intubation_coef;
+        Map<String, Double> getCoefficients() {
+            return coefficients;
+        }
 
-        public double calculateLogit(double ph, double age, double apgar, double weight,
-                                     double pao2, double malformations, double intubation) {
-            return intercept
-                    + ph_coef * ph
-                    + age_coef * age
-                    + apgar_coef * apgar
-                    + weight_coef * weight
-                    + pao2_coef * pao2
-                    + malformations_coef * malformations
-                    + intubation_coef * intubation;
+        public double getCoefficient(String parameterKey) {
+            Double coefficient = coefficients.get(parameterKey);
+            if (coefficient == null) {
+                throw new IllegalStateException("Нет коэффициента для параметра " + parameterKey);
+            }
+            return coefficient;
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,317 @@
+package org.example;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Таблица баллов Хермансена, скомпилированная из risk_config.json при загрузке.
+ * Диапазоны каждого параметра разворачиваются в отсортированный массив границ с бинарным поиском,
+ * а для небольших целочисленных шкал (Апгар, 0/1) — в прямую индексную таблицу.
+ * Результат совпадает с поиском "первый подходящий диапазон" в RiskDataStorage.ParameterConfig.findRange.
+ */
+public final class ScoringTable {
+    private static final int MAX_DIRECT_SPAN = 256;
+
+    private final ParameterTable[] tables;
+    private final RiskDataStorage.RiskLevel[] levels;
+    private final int levelBase;
+    private final int[] levelByScore;
+    private final double intercept;
+    private final double[] coefficients;
+    // сдвиг индекса диапазона каждого параметра в ключе ResultCache; null — индексы не умещаются в long
+    private final int[] keyShifts;
+
+    // Значения передаются массивом в порядке схемы параметров
+    ScoringTable(ParameterSchema schema, List<RiskDataStorage.RiskLevel> riskLevels,
+                 RiskDataStorage.ProbabilityFormula formula) {
+        this.tables = new ParameterTable[schema.size()];
+        this.coefficients = new double[schema.size()];
+        for (int i = 0; i < tables.length; i++) {
+            ParameterSchema.Parameter parameter = schema.get(i);
+            tables[i] = new ParameterTable(parameter.getConfig());
+            coefficients[i] = formula.getCoefficient(parameter.getKey());
+        }
+        this.intercept = formula.getIntercept();
+
+        int[] shifts = new int[tables.length];
+        int bits = 0;
+        for (int i = 0; i < tables.length; i++) {
+            shifts[i] = bits;
+            bits += 32 - Integer.numberOfLeadingZeros(tables[i].ranges.length - 1);
+        }
+        this.keyShifts = bits < Long.SIZE ? shifts : null;
+
+        this.levels = riskLevels.toArray(new RiskDataStorage.RiskLevel[0]);
+        int min = Integer.MAX_VALUE;
+        int max = Integer.MIN_VALUE;
+        for (RiskDataStorage.RiskLevel level : levels) {
+            min = Math.min(min, level.getMinScore());
+            max = Math.max(max, level.getMaxScore());
+        }
+        this.levelBase = min;
+        this.levelByScore = new int[levels.length == 0 ? 0 : max - min + 1];
+        for (int score = 0; score < levelByScore.length; score++) {
+            levelByScore[score] = -1;
+            for (int l = 0; l < levels.length; l++) {
+                if (score + min >= levels[l].getMinScore() && score + min <= levels[l].getMaxScore()) {
+                    levelByScore[score] = l;
+                    break;
+                }
+            }
+        }
+    }
+
+    public int parameterCount() {
+        return tables.length;
+    }
+
+    /**
+     * Индекс диапазона, в который попадает значение, или -1, если значение вне всех диапазонов.
+     */
+    public int findRange(int parameter, double value) {
+        return tables[parameter].lookup(value);
+    }
+
+    public RiskDataStorage.Range getRange(int parameter, int rangeIndex) {
+        return tables[parameter].ranges[rangeIndex];
+    }
+
+    public RiskDataStorage.ParameterConfig getParameterConfig(int parameter) {
+        return tables[parameter].config;
+    }
+
+    /**
+     * Уровень риска для суммы баллов или -1, если сумма не попадает ни в один уровень.
+     */
+    public int riskLevelOf(int score) {
+        int level = score - levelBase;
+        return level < 0 || level >= levelByScore.length ? -1 : levelByScore[level];
+    }
+
+    // Для пакетного расчёта (BulkScorer): коэффициенты логита в порядке схемы
+    double getIntercept() {
+        return intercept;
+    }
+
+    double[] getCoefficients() {
+        return coefficients;
+    }
+
+    /**
+     * Баллы параметра как ступенчатая функция: границы по возрастанию, балл в каждой границе
+     * и балл строго между соседними границами (между[0] — левее первой, между[n] — правее последней).
+     * Там, где значение не попадает ни в один диапазон, стоит NaN.
+     */
+    double[] getBoundaries(int parameter) {
+        return tables[parameter].points.clone();
+    }
+
+    double[] getScoresAtBoundaries(int parameter) {
+        ParameterTable table = tables[parameter];
+        return table.scoresOf(table.atPoint);
+    }
+
+    double[] getScoresBetweenBoundaries(int parameter) {
+        ParameterTable table = tables[parameter];
+        return table.scoresOf(table.between);
+    }
+
+    public int getRiskLevelCount() {
+        return levels.length;
+    }
+
+    public RiskDataStorage.RiskLevel getRiskLevel(int levelIndex) {
+        return levels[levelIndex];
+    }
+
+    /**
+     * Считает баллы, вероятность и уровень риска за один проход.
+     * Все результаты пишутся в переданный {@code out}, сам расчёт ничего не выделяет.
+     */
+    public Result evaluate(double[] values, Result out) {
+        return evaluate(values, out, null);
+    }
+
+    /**
+     * То же, но балл, уровень риска и текст ответа для набора диапазонов берутся из cache,
+     * а при промахе сохраняются в нём. Вероятность зависит от самих значений и считается всегда.
+     */
+    Result evaluate(double[] values, Result out, ResultCache cache) {
+        long key = 0;
+        for (int i = 0; i < tables.length; i++) {
+            int range = tables[i].lookup(values[i]);
+            if (range < 0) {
+                throw new IllegalArgumentException("Значение вне диапазона");
+            }
+            out.ranges[i] = range;
+            if (keyShifts != null) {
+                key |= (long) range << keyShifts[i];
+            }
+        }
+
+        ResultCache.Entry entry = cache == null || keyShifts == null ? null : cache.get(key);
+        if (entry != null) {
+            out.score = entry.getScore();
+            out.riskLevel = entry.getRiskLevel();
+        } else {
+            int score = 0;
+            for (int i = 0; i < tables.length; i++) {
+                score += tables[i].scores[out.ranges[i]];
+            }
+            int level = score - levelBase;
+            if (level < 0 || level >= levelByScore.length || levelByScore[level] < 0) {
+                throw new IllegalArgumentException("Неизвестный уровень риска");
+            }
+            out.score = score;
+            out.riskLevel = levelByScore[level];
+            if (cache != null && keyShifts != null) {
+                entry = cache.put(key, out);
+            }
+        }
+        out.cached = entry;
+        out.probability = probability(values);
+        return out;
+    }
+
+    public double logit(double[] values) {
+        // суммируем в порядке схемы — так же, как исходная формула
+        double logit = intercept;
+        for (int i = 0; i < coefficients.length; i++) {
+            logit += coefficients[i] * values[i];
+        }
+        return logit;
+    }
+
+    public double probability(double[] values) {
+        double logit = logit(values);
+        double exp = Math.exp(logit);
+        return exp / (1 + exp);
+    }
+
+    /**
+     * Переиспользуемый результат оценки.
+     */
+    public static final class Result {
+        private final int[] ranges;
+        private int score;
+        private int riskLevel;
+        private double probability;
+        private ResultCache.Entry cached;
+
+        public Result(int parameterCount) {
+            this.ranges = new int[parameterCount];
+        }
+
+        public int getScore() {
+            return score;
+        }
+
+        public double getProbability() {
+            return probability;
+        }
+
+        public int getRiskLevelIndex() {
+            return riskLevel;
+        }
+
+        public int getRangeIndex(int parameter) {
+            return ranges[parameter];
+        }
+
+        // Запись кэша с готовым текстом ответа или null, если расчёт шёл мимо кэша
+        ResultCache.Entry getCached() {
+            return cached;
+        }
+    }
+
+    private static final class ParameterTable {
+        private final RiskDataStorage.ParameterConfig config;
+        private final RiskDataStorage.Range[] ranges;
+        private final int[] scores;
+
+        // points — все различные границы диапазонов по возрастанию;
+        // atPoint[i] — диапазон для значения, равного points[i];
+        // between[i] — диапазон для значений строго между points[i - 1] и points[i]
+        private final double[] points;
+        private final int[] atPoint;
+        private final int[] between;
+
+        // Прямая таблица для целых значений, если все границы целые и шкала небольшая
+        private final int directBase;
+        private final int[] direct;
+
+        ParameterTable(RiskDataStorage.ParameterConfig config) {
+            this.config = config;
+            this.ranges = config.getRanges().toArray(new RiskDataStorage.Range[0]);
+            this.scores = new int[ranges.length];
+            TreeSet<Double> bounds = new TreeSet<>();
+            boolean integral = true;
+            for (int i = 0; i < ranges.length; i++) {
+                scores[i] = ranges[i].getScore();
+                bounds.add(ranges[i].getMin());
+                bounds.add(ranges[i].getMax());
+                integral &= ranges[i].getMin() == Math.rint(ranges[i].getMin())
+                        && ranges[i].getMax() == Math.rint(ranges[i].getMax());
+            }
+
+            this.points = bounds.stream().mapToDouble(Double::doubleValue).toArray();
+            this.atPoint = new int[points.length];
+            this.between = new int[points.length + 1];
+            between[0] = -1;
+            between[points.length] = -1;
+            for (int i = 0; i < points.length; i++) {
+                atPoint[i] = firstContaining(points[i], points[i]);
+                if (i > 0) {
+                    between[i] = firstContaining(points[i - 1], points[i]);
+                }
+            }
+
+            if (integral && points.length > 0 && points[points.length - 1] - points[0] < MAX_DIRECT_SPAN) {
+                this.directBase = (int) points[0];
+                this.direct = new int[(int) points[points.length - 1] - directBase + 1];
+                for (int v = 0; v < direct.length; v++) {
+                    direct[v] = lookupSorted(v + directBase);
+                }
+            } else {
+                this.directBase = 0;
+                this.direct = null;
+            }
+        }
+
+        double[] scoresOf(int[] rangeIndexes) {
+            double[] result = new double[rangeIndexes.length];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = rangeIndexes[i] < 0 ? Double.NaN : scores[rangeIndexes[i]];
+            }
+            return result;
+        }
+
+        int lookup(double value) {
+            if (direct != null) {
+                int whole = (int) value;
+                if (whole == value) {
+                    int slot = whole - directBase;
+                    return slot >= 0 && slot < direct.length ? direct[slot] : -1;
+                }
+            }
+            return lookupSorted(value);
+        }
+
+        private int lookupSorted(double value) {
+            value += 0.0; // -0.0 -> 0.0: binarySearch отличает их, а сравнение в findRange — нет
+            int i = Arrays.binarySearch(points, value);
+            return i >= 0 ? atPoint[i] : between[-i - 1];
+        }
+
+        // Первый диапазон (в порядке конфигурации), целиком покрывающий отрезок [from, to]
+        private int firstContaining(double from, double to) {
+            for (int i = 0; i < ranges.length; i++) {
+                if (from >= ranges[i].getMin() && to <= ranges[i].getMax()) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,432 @@
+package org.example;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+/**
+ * Журнал сессий на диске, чтобы перезапуск не терял начатые оценки.
+ * Файл только дописывается: каждая запись — полное состояние одного чата, действует последняя.
+ * Запись идёт с отложением (write-behind): save лишь кладёт снимок в память,
+ * фоновый поток раз в FLUSH_INTERVAL пишет накопленное одним блоком и делает один force.
+ * При старте файл один раз просматривается по заголовкам и строится индекс чат → смещение;
+ * сами сессии читаются лениво, при следующем сообщении из чата.
+ * Сессии старше maxAge раз в EXPIRE_INTERVAL снимаются с индекса.
+ * Когда устаревших записей становится больше половины файла, журнал переписывается заново.
+ */
+public class SessionJournal implements AutoCloseable {
+    private static final long FLUSH_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+    private static final long EXPIRE_INTERVAL_NANOS = TimeUnit.MINUTES.toNanos(1);
+    private static final long COMPACT_MIN_BYTES = 1 << 20;
+
+    // длина тела и CRC32 тела
+    private static final int HEADER_SIZE = 8;
+    // chatId, время сохранения, версия конфигурации, skipWelcome, индекс параметра, число значений
+    private static final int BODY_FIXED_SIZE = 8 + 8 + 8 + 1 + 2 + 2;
+
+    private final Path path;
+    private final long maxAgeMillis;
+    private final ConcurrentHashMap<Long, Slot> index = new ConcurrentHashMap<>(); // чат → последняя запись
+    private final ConcurrentHashMap<Long, Record> dirty = new ConcurrentHashMap<>();
+    // чтения идут параллельно, замена файла при сжатии — под блокировкой записи
+    private final ReentrantReadWriteLock fileLock = new ReentrantReadWriteLock();
+    private FileChannel channel;
+    private long size;
+    private long liveBytes;        // записи в индексе; меняется только в фоновом потоке (и в scan до его запуска)
+
+    private final Thread writer;
+    private volatile boolean running = true;
+
+    private final LongAdder written = new LongAdder();
+    private final LongAdder restored = new LongAdder();
+    private final LongAdder compactions = new LongAdder();
+
+    /**
+     * Состояние одного чата в журнале.
+     */
+    public static final class Record {
+        private final long chatId;
+        private final long savedAtMillis;
+        private final long configVersion;
+        private final boolean skipWelcome;
+        private final int parameterIndex;
+        private final double[] values;
+
+        public Record(long chatId, long savedAtMillis, long configVersion, boolean skipWelcome,
+                      int parameterIndex, double[] values) {
+            this.chatId = chatId;
+            this.savedAtMillis = savedAtMillis;
+            this.configVersion = configVersion;
+            this.skipWelcome = skipWelcome;
+            this.parameterIndex = parameterIndex;
+            this.values = values;
+        }
+
+        public long getChatId() {
+            return chatId;
+        }
+
+        public long getSavedAtMillis() {
+            return savedAtMillis;
+        }
+
+        public long getConfigVersion() {
+            return configVersion;
+        }
+
+        public boolean isSkipWelcome() {
+            return skipWelcome;
+        }
+
+        public int getParameterIndex() {
+            return parameterIndex;
+        }
+
+        public double[] getValues() {
+            return values;
+        }
+
+        int bodySize() {
+            return BODY_FIXED_SIZE + values.length * 8;
+        }
+    }
+
+    // Где в файле последняя запись чата и когда она сохранена
+    private record Slot(long offset, int length, long savedAtMillis) {
+    }
+
+    public SessionJournal(Path path, Duration maxAge) throws IOException {
+        this.path = path;
+        this.maxAgeMillis = maxAge.toMillis();
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        this.channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        scan();
+
+        this.writer = new Thread(this::writeLoop, "session-journal");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Запоминает состояние чата; на диск оно попадёт в следующей пачке. Не блокирует.
+     */
+    public void save(Record record) {
+        dirty.put(record.chatId, record);
+    }
+
+    /**
+     * Последнее сохранённое состояние чата или null, если его нет или оно старше maxAge.
+     */
+    public Record load(long chatId) {
+        Record record = dirty.get(chatId);
+        if (record == null) {
+            // смещение берётся под той же блокировкой, что и чтение, иначе сжатие может заменить файл между ними
+            fileLock.readLock().lock();
+            try {
+                Slot slot = index.get(chatId);
+                if (slot == null) {
+                    return null;
+                }
+                record = read(slot.offset());
+            } catch (IOException e) {
+                System.err.println("Не удалось прочитать сессию " + chatId + ": " + e.getMessage());
+                return null;
+            } finally {
+                fileLock.readLock().unlock();
+            }
+        }
+        if (record == null || record.chatId != chatId || isExpired(record, System.currentTimeMillis())) {
+            return null;
+        }
+        restored.increment();
+        return record;
+    }
+
+    /**
+     * Пишет всё накопленное и останавливает фоновый поток.
+     */
+    @Override
+    public void close() {
+        close(10, TimeUnit.SECONDS);
+    }
+
+    /**
+     * То же, но ждёт запись не дольше timeout. Возвращает false, если фоновый поток не успел:
+     * файл тогда остаётся открытым, чтобы запись могла закончиться, пока процесс ещё жив.
+     */
+    public boolean close(long timeout, TimeUnit unit) {
+        running = false;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(Math.max(1, unit.toMillis(timeout)));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (writer.isAlive()) {
+            System.err.println("Журнал сессий " + path + ": запись не завершилась за " + unit.toMillis(timeout) + " мс");
+            return false;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return true;
+    }
+
+    // Метрики
+
+    public int getIndexedSessions() {
+        return index.size();
+    }
+
+    public long getWrittenCount() {
+        return written.sum();
+    }
+
+    public long getRestoredCount() {
+        return restored.sum();
+    }
+
+    public long getCompactionCount() {
+        return compactions.sum();
+    }
+
+    public long getFileSize() {
+        return size;
+    }
+
+    private boolean isExpired(Record record, long nowMillis) {
+        return nowMillis - record.savedAtMillis > maxAgeMillis;
+    }
+
+    // Строит индекс по заголовкам; хвост, оборванный при аварии, отрезается
+    private void scan() throws IOException {
+        long fileSize = channel.size();
+        long position = 0;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE + 16);
+        while (position + HEADER_SIZE + BODY_FIXED_SIZE <= fileSize) {
+            header.clear();
+            channel.read(header, position);
+            header.flip();
+            int length = header.getInt();
+            header.getInt();
+            long chatId = header.getLong();
+            long savedAt = header.getLong();
+            if (length < BODY_FIXED_SIZE || position + HEADER_SIZE + length > fileSize) {
+                break;
+            }
+            // CRC проверяется при чтении записи; здесь достаточно, что запись целиком в файле
+            Slot previous = index.put(chatId, new Slot(position, HEADER_SIZE + length, savedAt));
+            liveBytes += HEADER_SIZE + length - (previous == null ? 0 : previous.length());
+            position += HEADER_SIZE + length;
+        }
+        if (position < fileSize) {
+            System.err.println("Журнал сессий " + path + ": отброшено " + (fileSize - position) + " байт в конце");
+            channel.truncate(position);
+        }
+        size = position;
+    }
+
+    private Record read(long offset) throws IOException {
+        fileLock.readLock().lock();
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            channel.read(header, offset);
+            header.flip();
+            int length = header.getInt();
+            int crc = header.getInt();
+
+            ByteBuffer body = ByteBuffer.allocate(length);
+            channel.read(body, offset + HEADER_SIZE);
+            body.flip();
+            CRC32 check = new CRC32();
+            check.update(body.duplicate());
+            if ((int) check.getValue() != crc) {
+                throw new IOException("контрольная сумма не совпадает");
+            }
+            return decode(body);
+        } finally {
+            fileLock.readLock().unlock();
+        }
+    }
+
+    private void writeLoop() {
+        long lastExpiry = System.nanoTime() - EXPIRE_INTERVAL_NANOS; // первый проход — сразу, по записям из scan
+        while (true) {
+            boolean stopping = !running;
+            try {
+                boolean changed = false;
+                if (!dirty.isEmpty()) {
+                    flush();
+                    changed = true;
+                }
+                if (System.nanoTime() - lastExpiry >= EXPIRE_INTERVAL_NANOS) {
+                    expire(System.currentTimeMillis());
+                    lastExpiry = System.nanoTime();
+                    changed = true;
+                }
+                if (changed && size >= COMPACT_MIN_BYTES && liveBytes * 2 < size) {
+                    compact();
+                }
+            } catch (IOException e) {
+                System.err.println("Ошибка записи журнала сессий: " + e.getMessage());
+            }
+            if (stopping) {
+                return;
+            }
+            LockSupport.parkNanos(FLUSH_INTERVAL_NANOS);
+        }
+    }
+
+    // Истёкшие сессии больше не живые: без этого разовые чаты навсегда откладывали бы сжатие
+    private void expire(long nowMillis) {
+        for (Map.Entry<Long, Slot> entry : index.entrySet()) {
+            Slot slot = entry.getValue();
+            if (nowMillis - slot.savedAtMillis() > maxAgeMillis && index.remove(entry.getKey(), slot)) {
+                liveBytes -= slot.length();
+            }
+        }
+    }
+
+    // Пишет все накопленные состояния одним блоком (group commit)
+    private void flush() throws IOException {
+        List<Record> batch = new ArrayList<>(dirty.size());
+        for (Map.Entry<Long, Record> entry : dirty.entrySet()) {
+            batch.add(entry.getValue());
+        }
+
+        int bytes = 0;
+        for (Record record : batch) {
+            bytes += HEADER_SIZE + record.bodySize();
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(bytes);
+        long[] offsets = new long[batch.size()];
+        for (int i = 0; i < batch.size(); i++) {
+            offsets[i] = size + buffer.position();
+            encode(batch.get(i), buffer);
+        }
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, size + buffer.position());
+        }
+        channel.force(false);
+        size += bytes;
+
+        for (int i = 0; i < batch.size(); i++) {
+            Record record = batch.get(i);
+            int length = HEADER_SIZE + record.bodySize();
+            Slot previous = index.put(record.chatId, new Slot(offsets[i], length, record.savedAtMillis));
+            liveBytes += length - (previous == null ? 0 : previous.length());
+            // если за время записи пришло новое состояние, оно останется до следующей пачки
+            dirty.remove(record.chatId, record);
+        }
+        written.add(batch.size());
+    }
+
+    // Переписывает журнал за один последовательный проход, оставляя по одной свежей записи на чат
+    private void compact() throws IOException {
+        Path temp = path.resolveSibling(path.getFileName() + ".compact");
+        long now = System.currentTimeMillis();
+        ConcurrentHashMap<Long, Slot> newIndex = new ConcurrentHashMap<>();
+        long newSize = 0;
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+            long position = 0;
+            while (position < size) {
+                int length = HEADER_SIZE + in.getInt((int) position);
+                long chatId = in.getLong((int) position + HEADER_SIZE);
+                long savedAt = in.getLong((int) position + HEADER_SIZE + 8);
+                Slot current = index.get(chatId);
+                if (current != null && current.offset() == position && now - savedAt <= maxAgeMillis) {
+                    if (buffer.remaining() < length) {
+                        newSize += writeFully(out, buffer.flip(), newSize);
+                        if (buffer.capacity() < length) {
+                            buffer = ByteBuffer.allocate(length);
+                        }
+                    }
+                    newIndex.put(chatId, new Slot(newSize + buffer.position(), length, savedAt));
+                    buffer.put(in.slice((int) position, length));
+                }
+                position += length;
+            }
+            newSize += writeFully(out, buffer.flip(), newSize);
+            out.force(true);
+        }
+
+        fileLock.writeLock().lock();
+        try {
+            channel.close();
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            index.keySet().retainAll(newIndex.keySet());
+            index.putAll(newIndex);
+            size = newSize;
+            liveBytes = newSize;
+        } finally {
+            fileLock.writeLock().unlock();
+        }
+        compactions.increment();
+    }
+
+    private static int writeFully(FileChannel out, ByteBuffer buffer, long position) throws IOException {
+        int written = 0;
+        while (buffer.hasRemaining()) {
+            written += out.write(buffer, position + written);
+        }
+        buffer.clear();
+        return written;
+    }
+
+    private static void encode(Record record, ByteBuffer out) {
+        int start = out.position();
+        out.putInt(record.bodySize());
+        out.putInt(0); // CRC допишем после тела
+        out.putLong(record.chatId);
+        out.putLong(record.savedAtMillis);
+        out.putLong(record.configVersion);
+        out.put((byte) (record.skipWelcome ? 1 : 0));
+        out.putShort((short) record.parameterIndex);
+        out.putShort((short) record.values.length);
+        for (double value : record.values) {
+            out.putDouble(value);
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(out.duplicate().position(start + HEADER_SIZE).limit(out.position()));
+        out.putInt(start + 4, (int) crc.getValue());
+    }
+
+    private static Record decode(ByteBuffer body) {
+        long chatId = body.getLong();
+        long savedAt = body.getLong();
+        long configVersion = body.getLong();
+        boolean skipWelcome = body.get() != 0;
+        int parameterIndex = body.getShort();
+        double[] values = new double[body.getShort()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = body.getDouble();
+        }
+        return new Record(chatId, savedAt, configVersion, skipWelcome, parameterIndex, values);
+    }
+}
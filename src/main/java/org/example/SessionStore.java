@@ -0,0 +1,275 @@
+package org.example;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongFunction;
+import java.util.function.Supplier;
+
+/**
+ * Хранилище сессий чатов с ключом-примитивом long.
+ * Таблица разбита на сегменты со своей блокировкой (lock striping), внутри сегмента —
+ * открытая адресация без упаковки ключей. Неактивные сессии вытесняются по таймауту,
+ * при переполнении сегмента вытесняется самая давно использованная.
+ * Если задан loader, при промахе сессия сначала ищется в нём (например, в журнале на диске)
+ * и только потом создаётся заново. loader вызывается вне блокировки сегмента: чтение с диска
+ * не задерживает другие чаты сегмента и не закрепляет виртуальный поток за потоком-носителем.
+ */
+public class SessionStore<V> {
+    private static final int STRIPES = 16;
+
+    private final Segment[] segments;
+    private final Supplier<V> factory;
+    private final LongFunction<V> loader;
+    private final int maxSessions;
+    private final long idleTimeoutNanos;
+    private final long sweepIntervalNanos;
+
+    private final LongAdder idleEvictions = new LongAdder();
+    private final LongAdder sizeEvictions = new LongAdder();
+
+    public SessionStore(int maxSessions, Duration idleTimeout, Supplier<V> factory) {
+        this(maxSessions, idleTimeout, factory, null);
+    }
+
+    /**
+     * loader возвращает сохранённую сессию чата или null; вызывается без блокировок, поэтому при одновременном
+     * промахе по одному чату может быть вызван дважды — в хранилище попадёт результат первого.
+     */
+    public SessionStore(int maxSessions, Duration idleTimeout, Supplier<V> factory, LongFunction<V> loader) {
+        if (maxSessions < STRIPES) {
+            throw new IllegalArgumentException("maxSessions должно быть не меньше " + STRIPES);
+        }
+        this.factory = factory;
+        this.loader = loader;
+        this.maxSessions = maxSessions;
+        this.idleTimeoutNanos = idleTimeout.toNanos();
+        // проверяем просроченные сессии не чаще, чем раз в четверть таймаута
+        this.sweepIntervalNanos = Math.max(1, idleTimeoutNanos / 4);
+
+        int perSegment = (maxSessions + STRIPES - 1) / STRIPES;
+        @SuppressWarnings("unchecked")
+        Segment[] segments = (Segment[]) new SessionStore<?>.Segment[STRIPES];
+        this.segments = segments;
+        for (int i = 0; i < STRIPES; i++) {
+            segments[i] = new Segment(perSegment);
+        }
+    }
+
+    /**
+     * Возвращает сессию чата, создавая её при первом обращении.
+     */
+    public V getOrCreate(long chatId) {
+        int hash = mix(chatId);
+        Segment segment = segmentFor(hash);
+        if (loader == null) {
+            return segment.getOrCreate(chatId, hash, System.nanoTime(), null);
+        }
+        V value = segment.get(chatId, hash, System.nanoTime());
+        if (value != null) {
+            return value;
+        }
+        V loaded = loader.apply(chatId);
+        // пока шла загрузка, сессию мог создать другой поток — тогда остаётся его сессия
+        return segment.getOrCreate(chatId, hash, System.nanoTime(), loaded);
+    }
+
+    /**
+     * Возвращает сессию чата или null, если её нет (или она уже вытеснена).
+     */
+    public V get(long chatId) {
+        int hash = mix(chatId);
+        return segmentFor(hash).get(chatId, hash, System.nanoTime());
+    }
+
+    public void remove(long chatId) {
+        int hash = mix(chatId);
+        segmentFor(hash).remove(chatId, hash);
+    }
+
+    /**
+     * Принудительно вытесняет все просроченные сессии во всех сегментах.
+     */
+    public void evictIdle() {
+        long now = System.nanoTime();
+        for (Segment segment : segments) {
+            segment.sweep(now);
+        }
+    }
+
+    // Метрики
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    public int getMaxSessions() {
+        return maxSessions;
+    }
+
+    public long getIdleEvictions() {
+        return idleEvictions.sum();
+    }
+
+    public long getSizeEvictions() {
+        return sizeEvictions.sum();
+    }
+
+    private Segment segmentFor(int hash) {
+        return segments[(hash >>> 28) & (STRIPES - 1)];
+    }
+
+    private static int mix(long key) {
+        // финализатор MurmurHash3: идентификаторы чатов идут подряд и бывают отрицательными
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+
+    private final class Segment {
+        private final int limit;
+        private final int mask;
+        private final long[] keys;
+        private final Object[] values;
+        private final long[] lastAccess;
+        private int count;
+        private long lastSweep = System.nanoTime();
+
+        Segment(int limit) {
+            this.limit = limit;
+            int capacity = Integer.highestOneBit(Math.max(limit * 2 - 1, 1)) << 1;
+            this.mask = capacity - 1;
+            this.keys = new long[capacity];
+            this.values = new Object[capacity];
+            this.lastAccess = new long[capacity];
+        }
+
+        @SuppressWarnings("unchecked")
+        synchronized V get(long key, int hash, long now) {
+            int i = find(key, hash);
+            if (i < 0) {
+                return null;
+            }
+            if (now - lastAccess[i] > idleTimeoutNanos) {
+                removeAt(i);
+                idleEvictions.increment();
+                return null;
+            }
+            lastAccess[i] = now;
+            return (V) values[i];
+        }
+
+        @SuppressWarnings("unchecked")
+        synchronized V getOrCreate(long key, int hash, long now, V loaded) {
+            int i = find(key, hash);
+            if (i >= 0 && now - lastAccess[i] <= idleTimeoutNanos) {
+                lastAccess[i] = now;
+                return (V) values[i];
+            }
+            if (i >= 0) {
+                // сессия просрочена — начинаем диалог заново
+                removeAt(i);
+                idleEvictions.increment();
+            }
+
+            if (now - lastSweep >= sweepIntervalNanos) {
+                sweep(now);
+            }
+            if (count >= limit) {
+                evictLeastRecent();
+            }
+
+            V value = loaded;
+            if (value == null) {
+                value = factory.get();
+            }
+            int slot = hash & mask;
+            while (values[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = key;
+            values[slot] = value;
+            lastAccess[slot] = now;
+            count++;
+            return value;
+        }
+
+        synchronized void remove(long key, int hash) {
+            int i = find(key, hash);
+            if (i >= 0) {
+                removeAt(i);
+            }
+        }
+
+        synchronized void sweep(long now) {
+            lastSweep = now;
+            int i = 0;
+            while (i <= mask) {
+                if (values[i] != null && now - lastAccess[i] > idleTimeoutNanos) {
+                    // после удаления в ячейку i может сдвинуться другой элемент — проверяем её ещё раз
+                    removeAt(i);
+                    idleEvictions.increment();
+                } else {
+                    i++;
+                }
+            }
+        }
+
+        synchronized int size() {
+            return count;
+        }
+
+        private void evictLeastRecent() {
+            int oldest = -1;
+            for (int i = 0; i <= mask; i++) {
+                if (values[i] != null && (oldest < 0 || lastAccess[i] - lastAccess[oldest] < 0)) {
+                    oldest = i;
+                }
+            }
+            if (oldest >= 0) {
+                removeAt(oldest);
+                sizeEvictions.increment();
+            }
+        }
+
+        private int find(long key, int hash) {
+            int slot = hash & mask;
+            while (values[slot] != null) {
+                if (keys[slot] == key) {
+                    return slot;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return -1;
+        }
+
+        // Удаление со сдвигом назад, чтобы не оставлять "надгробий" в цепочках линейного пробирования
+        private void removeAt(int index) {
+            int gap = index;
+            int j = index;
+            while (true) {
+                j = (j + 1) & mask;
+                if (values[j] == null) {
+                    break;
+                }
+                int home = mix(keys[j]) & mask;
+                if (((j - home) & mask) >= ((j - gap) & mask)) {
+                    keys[gap] = keys[j];
+                    values[gap] = values[j];
+                    lastAccess[gap] = lastAccess[j];
+                    gap = j;
+                }
+            }
+            keys[gap] = 0;
+            values[gap] = null;
+            lastAccess[gap] = 0;
+            count--;
+        }
+    }
+}
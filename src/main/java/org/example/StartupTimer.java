@@ -0,0 +1,60 @@
+package org.example;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Время запуска процесса: от старта JVM до main, от main до начала приёма обновлений
+ * (первый getUpdates или открытый порт webhook) и до первого полученного обновления.
+ * Итоги печатаются в консоль и отдаются метриками startup_*_millis.
+ */
+final class StartupTimer {
+    private static volatile long mainNanos;
+    private static volatile long jvmToMainMillis = -1;
+    private static volatile long readyMillis;
+    private static volatile long firstUpdateMillis;
+
+    private StartupTimer() {
+    }
+
+    static void mainStarted() {
+        mainNanos = System.nanoTime();
+        // время старта процесса известно с точностью до тика планировщика
+        ProcessHandle.current().info().startInstant()
+                .ifPresent(start -> jvmToMainMillis = Duration.between(start, Instant.now()).toMillis());
+    }
+
+    static void ready(String phase) {
+        if (mainNanos == 0) {
+            return;
+        }
+        readyMillis = sinceMain();
+        System.out.println("Запуск: JVM → main " + jvmToMainMillis + " мс, main → " + phase + " " + readyMillis + " мс");
+    }
+
+    // Вызывается на каждое обновление, поэтому сначала дешёвая проверка
+    static void updateReceived() {
+        if (firstUpdateMillis != 0 || mainNanos == 0) {
+            return;
+        }
+        synchronized (StartupTimer.class) {
+            if (firstUpdateMillis != 0) {
+                return;
+            }
+            firstUpdateMillis = Math.max(1, sinceMain());
+        }
+        System.out.println("Запуск: main → первое обновление " + firstUpdateMillis + " мс");
+    }
+
+    static long getReadyMillis() {
+        return readyMillis;
+    }
+
+    static long getFirstUpdateMillis() {
+        return firstUpdateMillis;
+    }
+
+    private static long sinceMain() {
+        return (System.nanoTime() - mainNanos) / 1_000_000;
+    }
+}
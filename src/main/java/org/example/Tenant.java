@@ -0,0 +1,171 @@
+package org.example;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.cdimascio.dotenv.Dotenv;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Один бот в процессе: своё имя, токен, конфигурация риска, журнал сессий и префикс метрик.
+ * Список берётся из файла TENANTS_CONFIG, например:
+ * [{"id": "north", "username": "NeoRiskNorth_bot", "tokenEnv": "NORTH_TOKEN", "riskConfig": "north.json"}]
+ * Токен задаётся переменной окружения (tokenEnv) или файлом в формате .env с BOT_TOKEN (tokenFile).
+ * Без TENANTS_CONFIG работает один бот, как раньше: token.env и RISK_CONFIG.
+ * sessionJournal и auditLog задают файлы журналов бота явно (none — без журнала);
+ * заданные так, они важнее переменных SESSION_JOURNAL и AUDIT_LOG.
+ */
+public class Tenant {
+    public static final String DEFAULT_ID = "default";
+    public static final String NONE = "none";
+
+    private String id;
+    private String username;
+    private String tokenEnv;
+    private String tokenFile;
+    private String riskConfig;
+    private String sessionJournal;
+    private String auditLog;
+
+    private volatile String token;
+
+    public static Tenant defaultTenant() {
+        Tenant tenant = new Tenant();
+        tenant.id = DEFAULT_ID;
+        tenant.username = "NeoRisk2_bot";
+        tenant.tokenFile = "token.env";
+        Path configured = RiskConfigHolder.configuredPath();
+        tenant.riskConfig = configured == null ? null : configured.toString();
+        return tenant;
+    }
+
+    /**
+     * Бот без своих файлов — для обучающего прогона, бенчмарков и нагрузочных тестов:
+     * журналы выключены явно, поэтому синтетические оценки не попадут в audit.log рабочего бота,
+     * даже если переменные окружения не заданы.
+     */
+    public static Tenant offline() {
+        Tenant tenant = defaultTenant();
+        tenant.sessionJournal = NONE;
+        tenant.auditLog = NONE;
+        return tenant;
+    }
+
+    /**
+     * То же, но журналы ведутся во временном каталоге directory — когда нужен и путь записи журналов.
+     */
+    public static Tenant offline(Path directory) {
+        Tenant tenant = defaultTenant();
+        tenant.sessionJournal = directory.resolve(tenant.getJournalFile()).toString();
+        tenant.auditLog = directory.resolve(tenant.getAuditFile()).toString();
+        return tenant;
+    }
+
+    public static List<Tenant> load() {
+        String file = System.getenv("TENANTS_CONFIG");
+        if (file == null || file.isBlank()) {
+            return List.of(defaultTenant());
+        }
+        try {
+            List<Tenant> tenants = new ObjectMapper().readValue(Path.of(file).toFile(),
+                    new TypeReference<List<Tenant>>() {
+                    });
+            Set<String> ids = new HashSet<>();
+            for (Tenant tenant : tenants) {
+                if (tenant.id == null || tenant.username == null) {
+                    throw new IllegalArgumentException("У бота не задан id или username");
+                }
+                if (!tenant.id.matches("[A-Za-z0-9_]+")) {
+                    throw new IllegalArgumentException("Недопустимый id бота: " + tenant.id);
+                }
+                if (!ids.add(tenant.id)) {
+                    throw new IllegalArgumentException("Повторяющийся id бота: " + tenant.id);
+                }
+            }
+            return tenants;
+        } catch (IOException e) {
+            throw new RuntimeException("Ошибка загрузки списка ботов " + file, e);
+        }
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public String getTokenEnv() {
+        return tokenEnv;
+    }
+
+    public String getTokenFile() {
+        return tokenFile;
+    }
+
+    public String getRiskConfig() {
+        return riskConfig;
+    }
+
+    public String getSessionJournal() {
+        return sessionJournal;
+    }
+
+    public String getAuditLog() {
+        return auditLog;
+    }
+
+    /**
+     * Токен читается один раз, при первом обращении.
+     */
+    public String getToken() {
+        String value = token;
+        if (value == null) {
+            if (tokenEnv != null) {
+                value = System.getenv(tokenEnv);
+            } else {
+                value = Dotenv.configure()
+                        .filename(tokenFile != null ? tokenFile : "token.env")
+                        .load()
+                        .get("BOT_TOKEN");
+            }
+            token = value;
+        }
+        return value;
+    }
+
+    public Path getRiskConfigPath() {
+        return riskConfig == null ? null : Path.of(riskConfig).toAbsolutePath();
+    }
+
+    public boolean isDefault() {
+        return DEFAULT_ID.equals(id);
+    }
+
+    public String getMetricsPrefix() {
+        return isDefault() ? "neorisk" : "neorisk_" + id;
+    }
+
+    /**
+     * Файл журнала сессий; для единственного бота — прежний sessions.journal.
+     */
+    public String getJournalFile() {
+        return isDefault() ? "sessions.journal" : "sessions-" + id + ".journal";
+    }
+
+    /**
+     * Журнал завершённых оценок; для единственного бота — audit.log.
+     */
+    public String getAuditFile() {
+        return isDefault() ? "audit.log" : "audit-" + id + ".log";
+    }
+
+    public String getWebhookPath(String basePath) {
+        return isDefault() ? basePath : basePath + "/" + id;
+    }
+}
@@ -0,0 +1,99 @@
+package org.example;
+
+import org.telegram.telegrambots.meta.api.methods.BotApiMethod;
+import org.telegram.telegrambots.meta.api.methods.updates.GetUpdates;
+import org.telegram.telegrambots.meta.api.objects.Update;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Обучающий прогон для архива AppCDS (профиль cds в pom.xml): java -Dbot.training=true
+ * -XX:ArchiveClassesAtExit=app.jsa -jar ... проходит обычный путь обработки — разбор
+ * обновлений Jackson, диалог по параметрам, строку параметров, расчёт и отрисовку результата, запись
+ * журналов (во временный каталог) — без сети и токена, и завершается. Классы, загруженные за это время,
+ * попадают в архив. Если ни одна оценка не дошла до результата, прогон завершается ошибкой:
+ * архив без горячего пути бесполезен.
+ */
+final class TrainingRun {
+    private static final String[] MESSAGES = {
+            "/start", "7.3", "5", "8", "3200", "4.8", "0", "0",
+            "7.3,5,8,3200,4.8,0,0", "abc", "/help", "/unknown"
+    };
+    private static final int CHATS = 4;
+    private static final int RESULTS_PER_CHAT = 2; // пошаговый ввод и строка
+
+    private TrainingRun() {
+    }
+
+    static void run() throws Exception {
+        Path directory = Files.createTempDirectory("training-");
+        OfflineBot bot = new OfflineBot(directory);
+        try {
+            int updateId = 1;
+            for (long chatId = 1; chatId <= CHATS; chatId++) {
+                for (String text : MESSAGES) {
+                    // тот же разбор ответа getUpdates, что и в UpdatePoller
+                    String response = "{\"ok\":true,\"result\":[" + updateJson(updateId++, chatId, text) + "]}";
+                    for (Update update : new GetUpdates().deserializeResponse(response)) {
+                        bot.onUpdateReceived(update);
+                    }
+                }
+            }
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+            while ((bot.getDispatcher().getProcessedCount() < updateId - 1 || bot.getOutbound().getPendingCount() > 0)
+                    && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            StringBuilder metrics = new StringBuilder();
+            bot.getMetrics().writePrometheus(metrics);
+        } finally {
+            bot.onClosing();
+            deleteDirectory(directory);
+        }
+        long results = bot.getMetrics().getCompletedCount();
+        if (results < CHATS * RESULTS_PER_CHAT) {
+            throw new IllegalStateException("Обучающий прогон: результатов оценки " + results + " из "
+                    + CHATS * RESULTS_PER_CHAT + ", архив не покроет расчёт и отрисовку результата");
+        }
+        System.out.println("Обучающий прогон завершён: " + bot.sent + " ответов, " + results + " результатов");
+    }
+
+    private static void deleteDirectory(Path directory) throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    private static String updateJson(int updateId, long chatId, String text) {
+        return "{\"update_id\":" + updateId + ",\"message\":{\"message_id\":" + updateId + ",\"date\":0,"
+                + "\"chat\":{\"id\":" + chatId + ",\"type\":\"private\"},"
+                + "\"from\":{\"id\":" + chatId + ",\"is_bot\":false,\"first_name\":\"training\"},"
+                + "\"text\":\"" + text + "\"}}";
+    }
+
+    // Ответы не уходят в сеть, только считаются
+    private static final class OfflineBot extends RiskBot {
+        private final AtomicLong sent = new AtomicLong();
+
+        // журналы — во временном каталоге: сборка профиля cds не должна дописывать оценки в рабочий audit.log
+        OfflineBot(Path directory) {
+            super(Tenant.offline(directory), Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY);
+        }
+
+        @Override
+        public <T extends Serializable, Method extends BotApiMethod<T>> CompletableFuture<T> executeAsync(Method method) {
+            sent.incrementAndGet();
+            return CompletableFuture.completedFuture(null);
+        }
+    }
+}
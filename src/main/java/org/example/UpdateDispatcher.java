@@ -0,0 +1,308 @@
+package org.example;
+
+import org.telegram.telegrambots.meta.api.objects.Update;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Раздаёт обновления по виртуальным потокам.
+ * Обновления разных чатов обрабатываются параллельно, обновления одного чата — строго по порядку:
+ * для каждого чата с непустой очередью работает ровно один обработчик.
+ * Если в очередях скопилось слишком много обновлений, submit блокирует поток опроса (backpressure).
+ */
+public class UpdateDispatcher implements AutoCloseable {
+    private final Consumer<Update> handler;
+    private final ExecutorService executor;
+    private final boolean ownExecutor;
+    private final ConcurrentHashMap<Long, ChatQueue> queues = new ConcurrentHashMap<>();
+    private final Semaphore capacity;
+
+    private volatile boolean closed;
+    private final AtomicInteger submitting = new AtomicInteger(); // submit в процессе; close ждёт их до остановки пула
+
+    private final AtomicInteger queueDepth = new AtomicInteger();
+    private final LongAdder processed = new LongAdder();
+    private final LongAdder totalLagNanos = new LongAdder();
+    private final AtomicLong maxLagNanos = new AtomicLong();
+    private final LatencyHistogram lagHistogram = new LatencyHistogram();
+
+    public UpdateDispatcher(Consumer<Update> handler, int maxPending) {
+        this(handler, maxPending, null);
+    }
+
+    /**
+     * executor — общий для нескольких ботов; если null, диспетчер создаёт свой на виртуальных потоках.
+     */
+    public UpdateDispatcher(Consumer<Update> handler, int maxPending, ExecutorService executor) {
+        this.handler = handler;
+        this.capacity = new Semaphore(maxPending);
+        this.ownExecutor = executor == null;
+        this.executor = ownExecutor ? Executors.newVirtualThreadPerTaskExecutor() : executor;
+    }
+
+    /**
+     * Ставит обновление в очередь его чата; false — диспетчер закрыт или поток прерван, обновление не принято.
+     */
+    public boolean submit(Update update) {
+        submitting.incrementAndGet();
+        try {
+            if (closed) {
+                return false;
+            }
+            try {
+                capacity.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+            queueDepth.incrementAndGet();
+
+            long chatId = chatIdOf(update);
+            Entry entry = new Entry(update, System.nanoTime());
+            boolean[] schedule = new boolean[1];
+            // добавление и снятие очереди чата идут через compute, чтобы не потерять обновление на границе
+            ChatQueue queue = queues.compute(chatId, (k, q) -> {
+                if (q == null) {
+                    q = new ChatQueue(k);
+                }
+                q.pending.add(entry);
+                if (!q.running) {
+                    q.running = true;
+                    schedule[0] = true;
+                }
+                return q;
+            });
+            if (schedule[0]) {
+                try {
+                    executor.execute(queue::drain);
+                } catch (RejectedExecutionException e) {
+                    // общий пул остановлен снаружи — обновление не принято
+                    undo(queue, entry);
+                    return false;
+                }
+            }
+            return true;
+        } finally {
+            submitting.decrementAndGet();
+        }
+    }
+
+    // Снимает обновление, для очереди которого не удалось запустить обработчик
+    private void undo(ChatQueue queue, Entry entry) {
+        boolean[] removed = new boolean[1];
+        boolean[] stranded = new boolean[1];
+        queues.compute(queue.chatId, (k, q) -> {
+            removed[0] = queue.pending.remove(entry);
+            if (queue.pending.isEmpty()) {
+                queue.running = false;
+                return null;
+            }
+            stranded[0] = true;
+            return q;
+        });
+        if (removed[0]) {
+            queueDepth.decrementAndGet();
+            capacity.release();
+        }
+        if (stranded[0]) {
+            // за это время в очередь чата добавили ещё — обрабатываем их здесь, иначе они не дождутся обработчика
+            queue.drain();
+        }
+    }
+
+    @Override
+    public void close() {
+        close(30, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Ждёт, пока разберутся принятые обновления, но не дольше timeout. Возвращает true, если всё обработано.
+     */
+    public boolean close(long timeout, TimeUnit unit) {
+        closed = true;
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        // submit, начавшийся до закрытия, должен успеть запустить обработчик до остановки пула;
+        // submit, застрявший дольше timeout, обновление уже не сдаст — пул останавливаем без него
+        while (submitting.get() > 0) {
+            if (System.nanoTime() - deadline >= 0) {
+                System.err.println("Диспетчер: " + submitting.get() + " submit не завершились до остановки");
+                break;
+            }
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        if (ownExecutor) {
+            executor.shutdown();
+            try {
+                return executor.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        // общий пул не останавливаем — ждём, пока разберутся свои очереди
+        while (queueDepth.get() > 0) {
+            if (System.nanoTime() - deadline >= 0) {
+                return false;
+            }
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Наименьший update_id среди обновлений, которые ждут в очередях или обрабатываются сейчас; -1, если таких нет.
+     * Просматривает все очереди — для остановки, не для горячего пути.
+     */
+    public int getOldestUnfinishedUpdateId() {
+        int oldest = Integer.MAX_VALUE;
+        for (ChatQueue queue : queues.values()) {
+            Entry active = queue.active;
+            if (active != null) {
+                oldest = Math.min(oldest, updateIdOf(active.update));
+            }
+            for (Entry entry : queue.pending) {
+                oldest = Math.min(oldest, updateIdOf(entry.update));
+            }
+        }
+        return oldest == Integer.MAX_VALUE ? -1 : oldest;
+    }
+
+    // Метрики
+
+    public int getQueueDepth() {
+        return queueDepth.get();
+    }
+
+    public int getActiveChats() {
+        return queues.size();
+    }
+
+    public long getProcessedCount() {
+        return processed.sum();
+    }
+
+    public long getMaxLagNanos() {
+        return maxLagNanos.get();
+    }
+
+    public long getAverageLagNanos() {
+        long count = processed.sum();
+        return count == 0 ? 0 : totalLagNanos.sum() / count;
+    }
+
+    public LatencyHistogram getLagHistogram() {
+        return lagHistogram;
+    }
+
+    /**
+     * Сколько ждёт самое старое из ещё не начатых обновлений всех чатов (0, если очереди пусты).
+     * В отличие от гистограммы задержки, растёт и тогда, когда обработка чата зависла и новых замеров нет.
+     */
+    public long getOldestWaitNanos() {
+        long now = System.nanoTime();
+        long oldest = 0;
+        for (ChatQueue queue : queues.values()) {
+            Entry head = queue.pending.peek();
+            if (head != null) {
+                oldest = Math.max(oldest, now - head.enqueuedAt);
+            }
+        }
+        return oldest;
+    }
+
+    static long chatIdOf(Update update) {
+        if (update.hasMessage()) {
+            return update.getMessage().getChatId();
+        }
+        // нажатие кнопки идёт в очередь того же чата, что и сообщения, — порядок ввода сохраняется
+        if (update.hasCallbackQuery() && update.getCallbackQuery().getMessage() != null) {
+            return update.getCallbackQuery().getMessage().getChatId();
+        }
+        return 0;
+    }
+
+    private static int updateIdOf(Update update) {
+        return update.getUpdateId() == null ? Integer.MAX_VALUE : update.getUpdateId();
+    }
+
+    private void recordLag(long lag) {
+        totalLagNanos.add(lag);
+        lagHistogram.record(lag);
+        long max;
+        while (lag > (max = maxLagNanos.get())) {
+            if (maxLagNanos.compareAndSet(max, lag)) {
+                break;
+            }
+        }
+    }
+
+    private record Entry(Update update, long enqueuedAt) {
+    }
+
+    private final class ChatQueue {
+        private final long chatId;
+        private final Queue<Entry> pending = new ConcurrentLinkedQueue<>();
+        private boolean running;      // под блокировкой compute
+        private volatile Entry active; // обрабатывается сейчас
+
+        ChatQueue(long chatId) {
+            this.chatId = chatId;
+        }
+
+        void drain() {
+            while (true) {
+                Entry entry;
+                // active ставится до снятия из очереди, чтобы обновление всегда было видно getOldestUnfinishedUpdateId
+                while ((entry = pending.peek()) != null) {
+                    active = entry;
+                    pending.poll();
+                    recordLag(System.nanoTime() - entry.enqueuedAt);
+                    try {
+                        handler.accept(entry.update);
+                    } catch (Throwable t) {
+                        t.printStackTrace();
+                    } finally {
+                        active = null;
+                        processed.increment();
+                        queueDepth.decrementAndGet();
+                        capacity.release();
+                    }
+                }
+                boolean[] done = new boolean[1];
+                // очередь пуста — снимаем её, если за это время ничего не добавили
+                queues.compute(chatId, (k, q) -> {
+                    if (pending.isEmpty()) {
+                        running = false;
+                        done[0] = true;
+                        return null;
+                    }
+                    return q;
+                });
+                if (done[0]) {
+                    return;
+                }
+            }
+        }
+    }
+}
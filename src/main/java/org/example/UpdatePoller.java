@@ -0,0 +1,145 @@
+package org.example;
+
+import org.telegram.telegrambots.meta.api.methods.updates.GetUpdates;
+import org.telegram.telegrambots.meta.api.objects.Update;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
+
+import java.util.List;
+
+/**
+ * Long polling, при котором подтверждается только переданное боту.
+ * Telegram считает обновление доставленным, когда следующий getUpdates приходит со смещением (offset)
+ * больше его update_id. Сессия из библиотеки читает наперёд: следующая порция запрашивается, пока предыдущая
+ * ещё лежит в её внутренней очереди, — при остановке эти обновления пропадают, а последняя порция остаётся
+ * неподтверждённой и приходит следующему экземпляру повторно, с повторными ответами.
+ * Здесь смещение сдвигается только после передачи обновления в очередь бота, а при остановке
+ * смещение подтверждается отдельным запросом (commit) — после того как бот доработал очередь, см. BotHost.shutdown.
+ */
+public class UpdatePoller implements AutoCloseable {
+    private static final int POLL_TIMEOUT = 50; // секунд; таймаут сокета библиотеки — 75
+    private static final int LIMIT = 100;
+    private static final long MAX_BACKOFF_MILLIS = 30_000;
+    private static final long OVERLOAD_PAUSE_MILLIS = 100;
+
+    private final RiskBot bot;
+    private final Thread thread;
+    private final Object handOff = new Object(); // передача обновления боту и остановка не пересекаются
+    private volatile boolean running = true;
+    private volatile int offset;                  // первое непереданное update_id; 0 — с первого неподтверждённого
+
+    public UpdatePoller(RiskBot bot) {
+        this.bot = bot;
+        // не демон — держит процесс; остановка не ждёт ответа на долгий опрос, его прервёт запрос commit
+        this.thread = new Thread(this::run, "updates-" + bot.getTenant().getId());
+    }
+
+    public void start() {
+        thread.start();
+    }
+
+    /**
+     * Перестаёт передавать обновления боту; ждёт только обновление, которое передаётся сейчас.
+     * Полученные, но не переданные обновления остаются неподтверждёнными — их получит следующий экземпляр.
+     */
+    public void stop() {
+        synchronized (handOff) {
+            running = false;
+        }
+    }
+
+    /**
+     * Подтверждает переданные боту обновления, кроме недоработанных: начиная с самого раннего из них
+     * обновления получит следующий экземпляр. Вызывается после stop и закрытия бота.
+     * Заодно завершает ещё ждущий долгий опрос: Telegram отвечает на него конфликтом,
+     * потому что пришёл более новый getUpdates.
+     */
+    public void commit() {
+        int upTo = offset;
+        int oldest = bot.getDispatcher().getOldestUnfinishedUpdateId();
+        if (oldest >= 0 && oldest < upTo) {
+            upTo = oldest;
+        }
+        if (upTo == 0) {
+            return; // ничего не получали
+        }
+        GetUpdates request = new GetUpdates();
+        request.setOffset(upTo);
+        request.setLimit(1);
+        request.setTimeout(0);
+        try {
+            bot.execute(request);
+        } catch (TelegramApiException e) {
+            // без подтверждения последняя порция придёт следующему экземпляру повторно
+            System.err.println("Не удалось подтвердить обновления бота " + bot.getTenant().getId() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Первое update_id, не переданное боту.
+     */
+    public int getOffset() {
+        return offset;
+    }
+
+    @Override
+    public void close() {
+        stop();
+    }
+
+    private void run() {
+        long backoff = 0;
+        boolean overloaded = false;
+        while (running) {
+            List<Update> updates;
+            try {
+                GetUpdates request = new GetUpdates();
+                request.setOffset(offset);
+                request.setLimit(LIMIT);
+                request.setTimeout(POLL_TIMEOUT);
+                updates = bot.execute(request);
+                backoff = 0;
+            } catch (TelegramApiException e) {
+                if (!running) {
+                    return;
+                }
+                // 409 — обновления забирает другой экземпляр или установлен webhook
+                String code = e instanceof TelegramApiRequestException
+                        ? " (" + ((TelegramApiRequestException) e).getErrorCode() + ")" : "";
+                backoff = Math.min(MAX_BACKOFF_MILLIS, backoff == 0 ? 500 : backoff * 2);
+                System.err.println("Ошибка получения обновлений" + code + ": " + e.getMessage()
+                        + ", повтор через " + backoff + " мс");
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException ie) {
+                    return;
+                }
+                continue;
+            }
+            for (Update update : updates) {
+                synchronized (handOff) {
+                    if (!running) {
+                        return;
+                    }
+                    if (update.getUpdateId() < offset) {
+                        continue;
+                    }
+                    if (!bot.offer(update)) {
+                        // бот перегружен: смещение не сдвигаем, остаток порции запросим заново после паузы
+                        overloaded = true;
+                        break;
+                    }
+                    offset = update.getUpdateId() + 1;
+                }
+            }
+            if (overloaded) {
+                overloaded = false;
+                try {
+                    Thread.sleep(OVERLOAD_PAUSE_MILLIS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package org.example;
+
+// Состояние диалога с одним чатом: какой параметр ждём и что уже введено
+class UserState {
+    private int currentParamIndex = 0;
+    private boolean skipWelcome = false;
+    // Снимок конфигурации, на котором идёт текущая оценка
+    private RiskDataStorage storage;
+    // Разобранные значения по слотам схемы параметров
+    private double[] values = new double[0];
+    // Переиспользуемый результат расчёта, чтобы не выделять его на каждую оценку
+    private ScoringTable.Result result;
+    // Буфер для текста результата, создаётся при первой оценке
+    private StringBuilder buffer;
+
+    /**
+     * Начинает оценку на указанном снимке конфигурации; он не меняется до её завершения.
+     */
+    public void begin(RiskDataStorage storage) {
+        this.storage = storage;
+        this.currentParamIndex = 0;
+        int parameterCount = storage.getSchema().size();
+        if (values.length != parameterCount) {
+            values = new double[parameterCount];
+            result = new ScoringTable.Result(parameterCount);
+        }
+    }
+
+    /**
+     * Восстанавливает незаконченную оценку из журнала сессий.
+     */
+    public void restore(RiskDataStorage storage, int parameterIndex, double[] saved) {
+        begin(storage);
+        System.arraycopy(saved, 0, values, 0, parameterIndex);
+        this.currentParamIndex = parameterIndex;
+    }
+
+    public RiskDataStorage getStorage() {
+        return storage;
+    }
+
+    public int getCurrentParameterIndex() {
+        return currentParamIndex;
+    }
+
+    public void addParameterValue(double value) {
+        values[currentParamIndex] = value;
+        currentParamIndex++;
+    }
+
+    public boolean isComplete() {
+        return currentParamIndex >= values.length;
+    }
+
+    public void reset() {
+        currentParamIndex = 0;
+    }
+
+    public double[] getValues() {
+        return values;
+    }
+
+    public ScoringTable.Result getResult() {
+        return result;
+    }
+
+    public StringBuilder getBuffer() {
+        if (buffer == null) {
+            buffer = new StringBuilder(1024);
+        }
+        return buffer;
+    }
+
+    public boolean isSkipWelcome() {
+        return skipWelcome;
+    }
+
+    public void setSkipWelcome(boolean skipWelcome) {
+        this.skipWelcome = skipWelcome;
+    }
+}
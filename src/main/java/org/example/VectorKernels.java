@@ -0,0 +1,68 @@
+package org.example;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Векторные циклы BulkScorer на jdk.incubator.vector.
+ * Класс загружается только при подключённом модуле (BulkScorer.VECTOR_AVAILABLE).
+ * Порядок операций тот же, что в скалярном пути: логит — сложение слагаемых по порядку схемы
+ * без FMA, баллы — сумма по параметрам, поэтому результаты совпадают бит в бит.
+ */
+final class VectorKernels {
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    private VectorKernels() {
+    }
+
+    static void logits(double intercept, double[] coefficients, double[][] columns, int from, int to,
+                       double[] out) {
+        int i = from;
+        int bound = from + SPECIES.loopBound(to - from);
+        for (; i < bound; i += SPECIES.length()) {
+            DoubleVector logit = DoubleVector.broadcast(SPECIES, intercept);
+            for (int p = 0; p < coefficients.length; p++) {
+                logit = logit.add(DoubleVector.fromArray(SPECIES, columns[p], i).mul(coefficients[p]));
+            }
+            logit.intoArray(out, i);
+        }
+        for (; i < to; i++) {
+            double logit = intercept;
+            for (int p = 0; p < coefficients.length; p++) {
+                logit += coefficients[p] * columns[p][i];
+            }
+            out[i] = logit;
+        }
+    }
+
+    /**
+     * Сумма баллов по параметрам строки i в out[i - from]; NaN — значение вне всех диапазонов
+     * хотя бы у одного параметра.
+     */
+    static void scores(double[][] boundaries, double[][] atBoundary, double[][] between, double[][] columns,
+                       int from, int to, double[] out) {
+        int i = from;
+        int bound = from + SPECIES.loopBound(to - from);
+        for (; i < bound; i += SPECIES.length()) {
+            DoubleVector total = DoubleVector.zero(SPECIES);
+            for (int p = 0; p < boundaries.length; p++) {
+                DoubleVector value = DoubleVector.fromArray(SPECIES, columns[p], i);
+                double[] points = boundaries[p];
+                // проходим границы по возрастанию: правее границы — балл следующего промежутка, на ней — её балл
+                DoubleVector score = DoubleVector.broadcast(SPECIES, between[p][0]);
+                for (int k = 0; k < points.length; k++) {
+                    VectorMask<Double> at = value.compare(VectorOperators.EQ, points[k]);
+                    VectorMask<Double> above = value.compare(VectorOperators.GT, points[k]);
+                    score = score.blend(atBoundary[p][k], at).blend(between[p][k + 1], above);
+                }
+                total = total.add(score);
+            }
+            total.intoArray(out, i - from);
+        }
+        for (; i < to; i++) {
+            out[i - from] = BulkScorer.scalarScore(boundaries, atBoundary, between, columns, i);
+        }
+    }
+}
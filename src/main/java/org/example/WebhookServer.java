@@ -0,0 +1,186 @@
+package org.example;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.telegram.telegrambots.meta.api.objects.Update;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Приём обновлений через webhook вместо long polling.
+ * Встроенный HttpServer из JDK: соединения обслуживает селектор (keep-alive HTTP/1.1),
+ * каждый запрос разбирается в виртуальном потоке прямо из потока тела, без копирования в строку,
+ * и отдаётся в тот же диспетчер, что и при опросе. Ответы уходят через исходящую очередь бота,
+ * поэтому Telegram сразу получает 200. Обновление, которое бот не принял (перегрузка), получает 503,
+ * и Telegram доставляет его повторно.
+ * Несколько ботов одного процесса делят сервер и пул, у каждого свой путь.
+ * Если задан секрет, запрос без заголовка X-Telegram-Bot-Api-Secret-Token с тем же значением
+ * получает 401: адрес webhook могут узнать и слать на него поддельные обновления.
+ * Для нагрузочной проверки достаточно слать JSON объекта Update на http://localhost:PORT/PATH
+ * (с этим заголовком, если секрет задан).
+ */
+public class WebhookServer implements AutoCloseable {
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    static final String SECRET_HEADER = "X-Telegram-Bot-Api-Secret-Token";
+
+    private final HttpServer server;
+    private final byte[] secret; // null — без проверки
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private volatile boolean accepting = true;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder received = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder unauthorized = new LongAdder();
+    private final LongAdder overloaded = new LongAdder();
+
+    public WebhookServer(int port) throws IOException {
+        this(port, null);
+    }
+
+    /**
+     * secret — значение secret_token, переданное Telegram в setWebhook; null или пустая строка — без проверки.
+     */
+    public WebhookServer(int port, String secret) throws IOException {
+        this.server = HttpServer.create(new InetSocketAddress(port), 0);
+        this.server.setExecutor(executor);
+        this.secret = secret == null || secret.isEmpty() ? null : secret.getBytes(StandardCharsets.UTF_8);
+    }
+
+    public void register(String path, RiskBot bot) {
+        server.createContext(path, exchange -> handle(exchange, bot));
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    private void handle(HttpExchange exchange, RiskBot bot) throws IOException {
+        inFlight.incrementAndGet();
+        try (exchange) {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                drain(exchange.getRequestBody());
+                exchange.getResponseHeaders().set("Allow", "POST");
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            if (!authorized(exchange)) {
+                unauthorized.increment();
+                drain(exchange.getRequestBody());
+                exchange.sendResponseHeaders(401, -1);
+                return;
+            }
+            if (!accepting) {
+                // Telegram повторит обновление позже, уже другому экземпляру или после перезапуска
+                drain(exchange.getRequestBody());
+                exchange.sendResponseHeaders(503, -1);
+                return;
+            }
+
+            Update update;
+            try (InputStream body = exchange.getRequestBody()) {
+                update = MAPPER.readValue(body, Update.class);
+            } catch (IOException e) {
+                rejected.increment();
+                exchange.sendResponseHeaders(400, -1);
+                return;
+            }
+
+            received.increment();
+            if (!bot.offer(update)) {
+                // бот перегружен или останавливается — Telegram доставит обновление повторно
+                overloaded.increment();
+                exchange.sendResponseHeaders(503, -1);
+                return;
+            }
+            exchange.sendResponseHeaders(200, -1);
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    // Сравнение за постоянное время: по времени ответа секрет не подобрать
+    private boolean authorized(HttpExchange exchange) {
+        if (secret == null) {
+            return true;
+        }
+        String header = exchange.getRequestHeaders().getFirst(SECRET_HEADER);
+        return header != null && MessageDigest.isEqual(secret, header.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // Тело нужно дочитать, иначе соединение нельзя переиспользовать
+    private static void drain(InputStream body) throws IOException {
+        try (body) {
+            body.transferTo(OutputStream.nullOutputStream());
+        }
+    }
+
+    /**
+     * Перестаёт принимать обновления и ждёт запросы, которые уже в обработке, не дольше timeout.
+     */
+    @Override
+    public void close() {
+        close(10, TimeUnit.SECONDS);
+    }
+
+    public void close(long timeout, TimeUnit unit) {
+        accepting = false;
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (inFlight.get() > 0 && System.nanoTime() - deadline < 0) {
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        server.stop(0);
+        executor.shutdown();
+    }
+
+    // Метрики
+
+    public long getReceivedCount() {
+        return received.sum();
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    /**
+     * Обновления, на которые ответили 503, потому что бот их не принял.
+     */
+    public long getOverloadedCount() {
+        return overloaded.sum();
+    }
+
+    /**
+     * Запросы без верного секрета.
+     */
+    public long getUnauthorizedCount() {
+        return unauthorized.sum();
+    }
+
+    public int getInFlightCount() {
+        return inFlight.get();
+    }
+}
@@ -0,0 +1,75 @@
+package org.example;
+
+import java.util.LinkedHashSet;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Значения для проверок эквивалентности: границы диапазонов и соседние с ними double,
+ * середины и промежутки между диапазонами, ±0.0, NaN, бесконечности и значения за пределами шкалы.
+ */
+final class BoundarySweep {
+    private static final int MAX_INTEGER_SPAN = 300;
+
+    private BoundarySweep() {
+    }
+
+    static double[] values(RiskDataStorage.ParameterConfig config) {
+        // Double.equals различает 0.0 и -0.0 и считает NaN равным себе — дубликаты отбрасываются корректно
+        Set<Double> values = new LinkedHashSet<>();
+        double lowest = Double.POSITIVE_INFINITY;
+        double highest = Double.NEGATIVE_INFINITY;
+        for (RiskDataStorage.Range range : config.getRanges()) {
+            addAround(values, range.getMin());
+            addAround(values, range.getMax());
+            values.add((range.getMin() + range.getMax()) / 2);
+            lowest = Math.min(lowest, range.getMin());
+            highest = Math.max(highest, range.getMax());
+        }
+        addAround(values, lowest - 1);
+        addAround(values, highest + 1);
+        if (highest - lowest < MAX_INTEGER_SPAN) {
+            // целые шкалы ScoringTable ищет по прямой таблице — проходим её целиком и чуть за края
+            for (double v = Math.floor(lowest) - 2; v <= Math.ceil(highest) + 2; v++) {
+                values.add(v);
+                values.add(v + 0.5);
+            }
+        }
+        for (double special : new double[] {0.0, -0.0, Double.NaN, Double.POSITIVE_INFINITY,
+                Double.NEGATIVE_INFINITY, Double.MIN_VALUE, -Double.MIN_VALUE, Double.MAX_VALUE,
+                -Double.MAX_VALUE, Integer.MAX_VALUE, Integer.MIN_VALUE, 1e300, -1e300}) {
+            values.add(special);
+        }
+        return values.stream().mapToDouble(Double::doubleValue).toArray();
+    }
+
+    /**
+     * Значения каждого параметра схемы, в порядке схемы.
+     */
+    static double[][] values(ParameterSchema schema) {
+        double[][] values = new double[schema.size()][];
+        for (int p = 0; p < values.length; p++) {
+            values[p] = values(schema.get(p).getConfig());
+        }
+        return values;
+    }
+
+    /**
+     * Случайный набор значений: параметр за параметром из своей выборки.
+     */
+    static double[] pick(double[][] values, Random random) {
+        double[] row = new double[values.length];
+        for (int p = 0; p < row.length; p++) {
+            row[p] = values[p][random.nextInt(values[p].length)];
+        }
+        return row;
+    }
+
+    private static void addAround(Set<Double> values, double value) {
+        values.add(value);
+        values.add(Math.nextUp(value));
+        values.add(Math.nextDown(value));
+        values.add(value - 0.05);
+        values.add(value + 0.05);
+    }
+}
@@ -0,0 +1,118 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * BulkScorer (скалярный путь и Vector API) против ScoringTable: логит и вероятность бит в бит,
+ * балл и уровень риска как у evaluate, для значений вне диапазонов -1.
+ */
+class BulkScorerTest {
+    // больше BulkScorer.CHUNK — пакет делится на задачи fork-join
+    private static final int RANDOM_ROWS = 50_000;
+
+    private final RiskDataStorage storage = RiskDataStorage.builtin();
+    private final ScoringTable table = storage.getScoringTable();
+
+    @Test
+    void vectorModuleIsLoaded() {
+        // surefire запускает тесты с --add-modules jdk.incubator.vector, иначе векторный путь не проверяется
+        assertTrue(BulkScorer.VECTOR_AVAILABLE);
+        assertTrue(new BulkScorer(table).isVectorized());
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void boundarySweepMatchesScoringTable(boolean vectorized) {
+        BulkScorer scorer = new BulkScorer(table, vectorized);
+        assertEquals(vectorized, scorer.isVectorized());
+        assertMatches(scorer, boundaryRows());
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void randomRowsMatchScoringTable(boolean vectorized) {
+        double[][] sweep = BoundarySweep.values(storage.getSchema());
+        Random random = new Random(7);
+        double[][] rows = new double[RANDOM_ROWS][];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = BoundarySweep.pick(sweep, random);
+        }
+        assertMatches(new BulkScorer(table, vectorized), rows);
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void batchTailsMatchScoringTable(boolean vectorized) {
+        // размеры, не кратные ширине вектора: хвост считается отдельно
+        BulkScorer scorer = new BulkScorer(table, vectorized);
+        double[][] rows = boundaryRows();
+        for (int size = 0; size <= 33; size++) {
+            assertMatches(scorer, Arrays.copyOfRange(rows, rows.length - size, rows.length));
+        }
+    }
+
+    // Допустимый пациент, у которого по очереди заменяется один параметр на каждое значение выборки
+    private double[][] boundaryRows() {
+        ParameterSchema schema = storage.getSchema();
+        double[][] sweep = BoundarySweep.values(schema);
+        double[] base = new double[schema.size()];
+        for (int p = 0; p < base.length; p++) {
+            RiskDataStorage.Range first = schema.get(p).getConfig().getRanges().get(0);
+            base[p] = first.getMin();
+        }
+        List<double[]> rows = new ArrayList<>();
+        for (int p = 0; p < base.length; p++) {
+            for (double value : sweep[p]) {
+                double[] row = base.clone();
+                row[p] = value;
+                rows.add(row);
+            }
+        }
+        return rows.toArray(new double[0][]);
+    }
+
+    private void assertMatches(BulkScorer scorer, double[][] rows) {
+        double[][] columns = new double[table.parameterCount()][rows.length];
+        for (int i = 0; i < rows.length; i++) {
+            for (int p = 0; p < columns.length; p++) {
+                columns[p][i] = rows[i][p];
+            }
+        }
+        BulkScorer.Results bulk = scorer.evaluate(columns);
+        assertEquals(rows.length, bulk.size());
+
+        ScoringTable.Result expected = new ScoringTable.Result(table.parameterCount());
+        for (int i = 0; i < rows.length; i++) {
+            double[] row = rows[i];
+            String where = Arrays.toString(row);
+            int score = 0;
+            for (int p = 0; p < row.length && score >= 0; p++) {
+                int range = table.findRange(p, row[p]);
+                score = range < 0 ? -1 : score + table.getRange(p, range).getScore();
+            }
+            int level = score < 0 ? -1 : table.riskLevelOf(score);
+            if (level >= 0) {
+                table.evaluate(row, expected);
+                score = expected.getScore();
+                level = expected.getRiskLevelIndex();
+            }
+            assertEquals(score, bulk.getScores()[i], where);
+            assertEquals(level, bulk.getRiskLevels()[i], where);
+            // doubleToLongBits: бит в бит, кроме содержимого NaN — его Java не фиксирует (∞ - ∞ в JIT и интерпретаторе)
+            assertEquals(Double.doubleToLongBits(table.logit(row)),
+                    Double.doubleToLongBits(bulk.getLogits()[i]), where);
+            assertEquals(Double.doubleToLongBits(table.probability(row)),
+                    Double.doubleToLongBits(bulk.getProbabilities()[i]), where);
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Тексты MessageTemplates против исходных ответов RiskBot, собиравшихся через StringBuilder и String.format.
+ * Surefire запускает тесты в локали ru_RU: "%.1f" пишет запятую, как у бота в работе.
+ */
+class MessageTemplatesTest {
+    private static final int RANDOM_ROWS = 100_000;
+
+    private final RiskDataStorage storage = RiskDataStorage.builtin();
+    private final MessageTemplates templates = storage.getTemplates();
+    private final ScoringTable table = storage.getScoringTable();
+    private final ParameterSchema schema = storage.getSchema();
+
+    @Test
+    void fixedMessagesMatchBaseline() {
+        String firstPrompt = schema.get(0).getPrompt();
+        assertEquals("👶 Добро пожаловать в бот оценки риска транспортировки новорожденных!\n\n" +
+                "Бот будет запрашивать параметры по одному.\n\n" +
+                "Введите /help для подробной инструкции или начните сразу с ввода параметров. \n\n" +
+                "Первый параметр: " + firstPrompt, templates.welcome());
+        assertEquals("Первый параметр: " + firstPrompt, templates.firstParameter());
+        for (int p = 0; p < schema.size(); p++) {
+            assertEquals("Введите следующий параметр: " + schema.get(p).getPrompt(), templates.nextParameter(p));
+        }
+        assertEquals("Неизвестная команда. Введите /help для списка команд.", templates.unknownCommand());
+        assertEquals("⚠️ Неверный формат. Пожалуйста, введите корректное числовое значение.",
+                templates.invalidFormat());
+        // исходная инструкция; абзац про /stats добавлен вместе с командой
+        assertEquals("📋 Инструкция по использованию бота:\n\n" +
+                "1. Подготовьте следующие данные пациента:\n" +
+                "   - Анализ крови (pH, PaO2)\n" +
+                "   - Основные антропометрические данные\n" +
+                "   - Информацию о состоянии при рождении\n\n" +
+                "2. Введите все 7 параметров через запятую в строгом порядке:\n" +
+                "   - pH крови\n" +
+                "   - Возраст в часах\n" +
+                "   - Оценка по Апгар (1-я минута)\n" +
+                "   - Вес при рождении (г)\n" +
+                "   - PaO2 (кПа)\n" +
+                "   - Наличие пороков (0/1)\n" +
+                "   - Интубация (0/1)\n\n" +
+                "3. Бот рассчитает и вернет:\n" +
+                "   - Общий балл риска\n" +
+                "   - Уровень риска\n" +
+                "   - Вероятность неблагоприятного исхода\n" +
+                "   - Подробную интерпретацию\n" +
+                "   - Рекомендации по транспортировке\n\n" +
+                "Пример ввода: 7.25, 2, 5, 1800, 4.8, 0, 1\n\n" +
+                "Для оценки сразу многих пациентов отправьте CSV-файл: по одному пациенту в строке, " +
+                "параметры в том же порядке. В ответ придёт файл с результатами.\n\n" +
+                "Статистика завершённых оценок: /stats, тренд за N дней: /stats N.\n\n" +
+                "Если вы ознакомились с инструкцией, введите /start, чтобы начать ввод параметров.",
+                templates.help());
+    }
+
+    @Test
+    void appendOneDecimalMatchesFormat() {
+        List<Double> values = new ArrayList<>();
+        // все значения с тремя знаками до 100: здесь работает быстрый путь и округление половины вверх
+        for (int thousandths = 0; thousandths <= 100_000; thousandths++) {
+            values.add(thousandths / 1000.0);
+            values.add(-thousandths / 1000.0);
+        }
+        for (double value : new double[] {0.0, -0.0, Double.NaN, Double.POSITIVE_INFINITY,
+                Double.NEGATIVE_INFINITY, Double.MIN_VALUE, Double.MAX_VALUE, 1e12, 1e12 - 0.05,
+                1e15, 999_999_999_999_999.75, 0.05, 0.15, 0.25, 0.35, 0.45, 2.45, 6.95, 7.05, 1e-4, 0.0499999}) {
+            values.add(value);
+            values.add(Math.nextUp(value));
+            values.add(Math.nextDown(value));
+        }
+        Random random = new Random(3);
+        for (int i = 0; i < 100_000; i++) {
+            values.add(random.nextDouble() * 5000);
+            values.add(Double.longBitsToDouble(random.nextLong()));
+        }
+
+        StringBuilder out = new StringBuilder();
+        for (double value : values) {
+            out.setLength(0);
+            MessageTemplates.appendOneDecimal(out, value);
+            assertEquals(String.format("%.1f", value), out.toString(), () -> Double.toString(value));
+        }
+    }
+
+    @Test
+    void assessmentMatchesBaseline() {
+        double[][] sweep = inRange(BoundarySweep.values(schema));
+        ResultCache cache = new ResultCache(templates);
+
+        double[] base = new double[schema.size()];
+        for (int p = 0; p < base.length; p++) {
+            base[p] = sweep[p][0];
+        }
+        for (int p = 0; p < base.length; p++) {
+            for (double value : sweep[p]) {
+                double[] values = base.clone();
+                values[p] = value;
+                assertRendersLikeBaseline(values, cache);
+            }
+        }
+
+        // значения в диапазонах с 0–3 знаками после запятой, как их вводят, и произвольные double
+        Random random = new Random(11);
+        for (int i = 0; i < RANDOM_ROWS; i++) {
+            double[] values = BoundarySweep.pick(sweep, random);
+            for (int p = 0; p < values.length; p++) {
+                RiskDataStorage.Range range = table.getRange(p, random.nextInt(table.getParameterConfig(p)
+                        .getRanges().size()));
+                double value = range.getMin() + random.nextDouble() * (range.getMax() - range.getMin());
+                double scale = Math.pow(10, random.nextInt(4));
+                double rounded = Math.round(value * scale) / scale;
+                double candidate = i % 3 == 0 ? value : rounded;
+                if (table.findRange(p, candidate) >= 0) {
+                    values[p] = candidate;
+                }
+            }
+            assertRendersLikeBaseline(values, cache);
+        }
+    }
+
+    // Без кэша, затем дважды через кэш: промах собирает куски ответа, попадание дописывает их
+    private void assertRendersLikeBaseline(double[] values, ResultCache cache) {
+        String where = Arrays.toString(values);
+        ScoringTable.Result result = table.evaluate(values, new ScoringTable.Result(values.length));
+        String expected = baselineResponse(result, values);
+
+        StringBuilder out = new StringBuilder();
+        templates.renderAssessment(out, result, values);
+        assertEquals(expected, out.toString(), where);
+        for (int attempt = 0; attempt < 2; attempt++) {
+            ScoringTable.Result cached = table.evaluate(values, new ScoringTable.Result(values.length), cache);
+            out.setLength(0);
+            templates.renderAssessment(out, cached, values);
+            assertEquals(expected, out.toString(), where);
+        }
+    }
+
+    private double[][] inRange(double[][] sweep) {
+        double[][] inRange = new double[sweep.length][];
+        for (int p = 0; p < sweep.length; p++) {
+            int parameter = p;
+            inRange[p] = Arrays.stream(sweep[p]).filter(v -> table.findRange(parameter, v) >= 0).toArray();
+        }
+        return inRange;
+    }
+
+    // Исходные RiskBot.buildAssessmentResponse и formatParameterDetail до шаблонов сообщений
+
+    private String baselineResponse(ScoringTable.Result result, double[] values) {
+        RiskDataStorage.RiskLevel уровеньРиска = table.getRiskLevel(result.getRiskLevelIndex());
+
+        StringBuilder ответ = new StringBuilder();
+        ответ.append("⚕️ Результаты оценки риска транспортировки ⚕️\n\n");
+        ответ.append("▉ Общий балл: ").append(result.getScore()).append(" из 40\n");
+        ответ.append("▉ Диагноз: ").append(уровеньРиска.getDiagnosis()).append("\n");
+        ответ.append("▉ Вероятность: ").append(уровеньРиска.getProbabilityRange()).append("\n\n");
+
+        ответ.append("📋 Детализация параметров:\n");
+        for (int i = 0; i < values.length; i++) {
+            ответ.append(baselineDetail(schema.get(i).getLabel(), values[i],
+                    table.getParameterConfig(i), table.getRange(i, result.getRangeIndex(i))));
+        }
+
+        ответ.append("\n🚑 Рекомендации:\n").append(уровеньРиска.getRecommendation());
+        ответ.append("\n\n🔁 Для нового тестирования введите /start");
+
+        return ответ.toString();
+    }
+
+    private static String baselineDetail(String paramName, double value,
+                                         RiskDataStorage.ParameterConfig config, RiskDataStorage.Range range) {
+        return String.format("• %s: %.1f %s - %s (%d баллов)\n",
+                paramName, value, config.getUnit(), range.getComment(), range.getScore());
+    }
+}
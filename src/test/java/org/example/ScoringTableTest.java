@@ -0,0 +1,183 @@
+package org.example;
+
+import org.junit.jupiter.api.Named;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * ScoringTable против исходного расчёта: поиск диапазона и уровня риска потоком "первый подходящий",
+ * сумма баллов и логит по параметрам в исходном порядке.
+ */
+class ScoringTableTest {
+    // порядок слагаемых в исходной ProbabilityFormula.calculateLogit
+    private static final String[] BASELINE_ORDER = {
+            "ph", "age", "apgar", "weight", "pao2", "malformations", "intubation"};
+    private static final int RANDOM_ROWS = 200_000;
+
+    static Stream<Arguments> storages() {
+        return Stream.of(
+                Arguments.of(Named.of("risk_config.bin", RiskDataStorage.builtin())),
+                Arguments.of(Named.of("risk_config.json", new RiskDataStorage())));
+    }
+
+    @ParameterizedTest
+    @MethodSource("storages")
+    void schemaKeepsBaselineOrder(RiskDataStorage storage) {
+        ParameterSchema schema = storage.getSchema();
+        String[] keys = new String[schema.size()];
+        for (int p = 0; p < keys.length; p++) {
+            keys[p] = schema.get(p).getKey();
+        }
+        assertArrayEquals(BASELINE_ORDER, keys);
+    }
+
+    @ParameterizedTest
+    @MethodSource("storages")
+    void findRangeMatchesFirstMatchingRange(RiskDataStorage storage) {
+        ScoringTable table = storage.getScoringTable();
+        ParameterSchema schema = storage.getSchema();
+        for (int p = 0; p < schema.size(); p++) {
+            RiskDataStorage.ParameterConfig config = schema.get(p).getConfig();
+            for (double value : BoundarySweep.values(config)) {
+                RiskDataStorage.Range expected = baselineRangeOrNull(config, value);
+                int index = table.findRange(p, value);
+                String where = schema.get(p).getKey() + " = " + value;
+                assertSame(expected, index < 0 ? null : table.getRange(p, index), where);
+            }
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource("storages")
+    void riskLevelMatchesFirstMatchingLevel(RiskDataStorage storage) {
+        ScoringTable table = storage.getScoringTable();
+        for (int score = -10; score <= 60; score++) {
+            RiskDataStorage.RiskLevel expected;
+            try {
+                expected = baselineRiskLevel(storage, score);
+            } catch (IllegalArgumentException e) {
+                expected = null;
+            }
+            int level = table.riskLevelOf(score);
+            assertSame(expected, level < 0 ? null : table.getRiskLevel(level), "балл " + score);
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource("storages")
+    void evaluateMatchesBaseline(RiskDataStorage storage) {
+        ParameterSchema schema = storage.getSchema();
+        double[][] sweep = BoundarySweep.values(schema);
+        double[][] inRange = inRange(schema, sweep);
+        ResultCache cache = new ResultCache(storage.getTemplates());
+
+        // каждый параметр проходит свою выборку, остальные — в допустимом диапазоне
+        double[] row = new double[schema.size()];
+        for (int p = 0; p < row.length; p++) {
+            row[p] = inRange[p][0];
+        }
+        for (int p = 0; p < row.length; p++) {
+            double[] values = row.clone();
+            for (double value : sweep[p]) {
+                values[p] = value;
+                assertMatchesBaseline(storage, values, cache);
+            }
+        }
+
+        Random random = new Random(42);
+        for (int i = 0; i < RANDOM_ROWS; i++) {
+            assertMatchesBaseline(storage, BoundarySweep.pick(i % 2 == 0 ? inRange : sweep, random), cache);
+        }
+    }
+
+    private static void assertMatchesBaseline(RiskDataStorage storage, double[] values, ResultCache cache) {
+        ScoringTable table = storage.getScoringTable();
+        String where = Arrays.toString(values);
+        int score;
+        RiskDataStorage.RiskLevel level;
+        try {
+            score = baselineScore(storage, values);
+            level = baselineRiskLevel(storage, score);
+        } catch (IllegalArgumentException e) {
+            IllegalArgumentException actual = assertThrows(IllegalArgumentException.class,
+                    () -> table.evaluate(values, new ScoringTable.Result(values.length)), where);
+            assertEquals(e.getMessage(), actual.getMessage(), where);
+            assertThrows(IllegalArgumentException.class,
+                    () -> table.evaluate(values, new ScoringTable.Result(values.length), cache), where);
+            return;
+        }
+        double probability = baselineProbability(storage, values);
+
+        // без кэша и через кэш: при попадании балл и уровень берутся из записи
+        for (ResultCache withCache : new ResultCache[] {null, cache}) {
+            ScoringTable.Result result = table.evaluate(values, new ScoringTable.Result(values.length), withCache);
+            assertEquals(score, result.getScore(), where);
+            assertSame(level, table.getRiskLevel(result.getRiskLevelIndex()), where);
+            assertEquals(probability, result.getProbability(), where);
+            assertEquals(probability, table.probability(values), where);
+        }
+    }
+
+    // Значения выборки, попадающие хотя бы в один диапазон
+    private static double[][] inRange(ParameterSchema schema, double[][] sweep) {
+        double[][] inRange = new double[sweep.length][];
+        for (int p = 0; p < sweep.length; p++) {
+            RiskDataStorage.ParameterConfig config = schema.get(p).getConfig();
+            inRange[p] = Arrays.stream(sweep[p]).filter(v -> baselineRangeOrNull(config, v) != null).toArray();
+        }
+        return inRange;
+    }
+
+    // Исходный расчёт из RiskBot.calculateHermansenScore и RiskDataStorage до ScoringTable
+
+    private static RiskDataStorage.Range baselineFindRange(RiskDataStorage.ParameterConfig config, double value) {
+        return config.getRanges().stream()
+                .filter(r -> value >= r.getMin() && value <= r.getMax())
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Значение вне диапазона"));
+    }
+
+    private static RiskDataStorage.Range baselineRangeOrNull(RiskDataStorage.ParameterConfig config, double value) {
+        try {
+            return baselineFindRange(config, value);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static RiskDataStorage.RiskLevel baselineRiskLevel(RiskDataStorage storage, int score) {
+        ScoringTable table = storage.getScoringTable();
+        return Stream.iterate(0, l -> l < table.getRiskLevelCount(), l -> l + 1)
+                .map(table::getRiskLevel)
+                .filter(r -> score >= r.getMinScore() && score <= r.getMaxScore())
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Неизвестный уровень риска"));
+    }
+
+    private static int baselineScore(RiskDataStorage storage, double[] values) {
+        int score = 0;
+        for (int p = 0; p < BASELINE_ORDER.length; p++) {
+            score += baselineFindRange(storage.getParameterConfig(BASELINE_ORDER[p]), values[p]).getScore();
+        }
+        return score;
+    }
+
+    private static double baselineProbability(RiskDataStorage storage, double[] values) {
+        RiskDataStorage.ProbabilityFormula formula = storage.getProbabilityFormula();
+        double logit = formula.getIntercept();
+        for (int p = 0; p < BASELINE_ORDER.length; p++) {
+            logit = logit + formula.getCoefficient(BASELINE_ORDER[p]) * values[p];
+        }
+        return Math.exp(logit) / (1 + Math.exp(logit));
+    }
+}